@@ -0,0 +1,59 @@
+package com.craftinginterpreters.lox;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The settings and the workloads shared by the benchmark of each stage: every
+ * stage is measured on each script of `corpus/`, classic interpreter
+ * workloads, in average time per run of the stage over the whole script.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public abstract class CorpusBenchmark {
+    @Param({ "fib", "binary_trees", "method_call", "instantiation", "properties",
+            "string_equality", "zoo", "closures" })
+    public String workload;
+
+    // Discards what scripts print, and would report errors, which the corpus has none of
+    final PrintStream sink = new PrintStream(OutputStream.nullOutputStream());
+    final ErrorReporter reporter = new ErrorReporter(System.err);
+
+    String source() {
+        try (InputStream in = CorpusBenchmark.class.getResourceAsStream("/corpus/" + workload + ".lox")) {
+            if (in == null)
+                throw new IllegalArgumentException("No workload '" + workload + "' in the corpus.");
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException error) {
+            throw new UncheckedIOException(error);
+        }
+    }
+
+    List<Token> scan(String source) {
+        return new Scanner(source, reporter).scanTokens();
+    }
+
+    List<Stmt> parse(String source) {
+        return new Parser(scan(source), reporter).parse();
+    }
+}
@@ -0,0 +1,31 @@
+package com.craftinginterpreters.lox;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+
+// `Interpreter.interpret` of each workload, resolved once, in a new interpreter for each run
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class InterpreterBenchmark extends CorpusBenchmark {
+    private List<Stmt> statements;
+
+    @Setup
+    public void setUp() {
+        statements = parse(source());
+        new Resolver(reporter).resolve(statements);
+        if (reporter.hadError)
+            throw new IllegalStateException("The workload '" + workload + "' has errors.");
+    }
+
+    @Benchmark
+    public Object interpret() {
+        Interpreter interpreter = new Interpreter(reporter, sink, NativeRegistry.core());
+        interpreter.interpret(statements);
+        if (reporter.hadRuntimeError)
+            throw new IllegalStateException("The workload '" + workload + "' failed.");
+        return interpreter;
+    }
+}
@@ -0,0 +1,21 @@
+package com.craftinginterpreters.lox;
+
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Setup;
+
+// `Parser.parse` over the tokens of each workload, scanned once
+public class ParserBenchmark extends CorpusBenchmark {
+    private List<Token> tokens;
+
+    @Setup
+    public void setUp() {
+        tokens = scan(source());
+    }
+
+    @Benchmark
+    public Object parse() {
+        return new Parser(tokens, reporter).parse();
+    }
+}
@@ -0,0 +1,26 @@
+package com.craftinginterpreters.lox;
+
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * `Resolver.resolve` over the syntax tree of each workload, parsed once. The
+ * resolver stores what it finds in the tree, but finds the same each time, so
+ * resolving the same tree again measures the same work.
+ */
+public class ResolverBenchmark extends CorpusBenchmark {
+    private List<Stmt> statements;
+
+    @Setup
+    public void setUp() {
+        statements = parse(source());
+    }
+
+    @Benchmark
+    public Object resolve() {
+        new Resolver(reporter).resolve(statements);
+        return statements;
+    }
+}
@@ -0,0 +1,19 @@
+package com.craftinginterpreters.lox;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Setup;
+
+// `Scanner.scanTokens` over the source of each workload
+public class ScannerBenchmark extends CorpusBenchmark {
+    private String source;
+
+    @Setup
+    public void setUp() {
+        source = source();
+    }
+
+    @Benchmark
+    public Object scanTokens() {
+        return new Scanner(source, reporter).scanTokens();
+    }
+}
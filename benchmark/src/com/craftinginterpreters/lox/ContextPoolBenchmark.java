@@ -0,0 +1,78 @@
+package com.craftinginterpreters.lox;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * Measures the latency of serving one small script, either in a fresh context
+ * that runs the prelude first, or in a context acquired from a pool and
+ * released afterwards. The script defines and assigns globals, so every
+ * release has something to reset.
+ *
+ * Usage: ContextPoolBenchmark [requests]
+ */
+public class ContextPoolBenchmark {
+    private static final int WARMUP = 2000;
+
+    public static void main(String[] args) {
+        int requests = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        String prelude = ProgramCacheBenchmark.generatePrelude(20) + "var served = 0;\n";
+
+        LoxEngine engine = new LoxEngine();
+        Program script = engine.compile(
+                "var shape = Shape7(3, 4);\n" +
+                "served = served + 1;\n" +
+                "print shape.describe() + \" \" + helper3(10)(served);\n");
+        LoxContextPool pool = engine.newContextPool(prelude);
+        PrintStream sink = new PrintStream(OutputStream.nullOutputStream());
+
+        measure(engine, pool, prelude, script, sink, WARMUP);
+
+        long[] fresh = new long[requests];
+        long[] pooled = new long[requests];
+        for (int i = 0; i < requests; ++i) {
+            long start = System.nanoTime();
+            LoxContext context = engine.newContext(sink, sink);
+            context.runPrelude(prelude);
+            check(context.run(script));
+            fresh[i] = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            context = pool.acquire(sink, sink);
+            check(context.run(script));
+            pool.release(context);
+            pooled[i] = System.nanoTime() - start;
+        }
+
+        System.out.printf("%d requests%n", requests);
+        System.out.printf("%-22s %10s %10s %10s%n", "", "p50 us", "p99 us", "mean us");
+        report("fresh context", fresh);
+        report("acquire/run/release", pooled);
+    }
+
+    private static void measure(LoxEngine engine, LoxContextPool pool, String prelude,
+                                Program script, PrintStream sink, int requests) {
+        for (int i = 0; i < requests; ++i) {
+            LoxContext context = engine.newContext(sink, sink);
+            context.runPrelude(prelude);
+            check(context.run(script));
+            context = pool.acquire(sink, sink);
+            check(context.run(script));
+            pool.release(context);
+        }
+    }
+
+    private static void check(boolean ok) {
+        if (!ok)
+            throw new IllegalStateException("The benchmark script failed.");
+    }
+
+    private static void report(String name, long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        double mean = Arrays.stream(sorted).average().orElse(0);
+        System.out.printf("%-22s %10.1f %10.1f %10.1f%n", name,
+                sorted[sorted.length / 2] / 1e3, sorted[sorted.length * 99 / 100] / 1e3, mean / 1e3);
+    }
+}
@@ -0,0 +1,99 @@
+package com.craftinginterpreters.lox;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Loads the same records into a script in the way it is done without
+ * parsers, as generated Lox source building maps that is compiled and run,
+ * and with `parseJson(text)`, `readJson(path)`, `jsonEvents(path)` (pulling
+ * one record at a time), `parseCsv(text)` and `csvRows(path)`. Each script
+ * also sums a field of the records. Reports the time per run and the
+ * throughput in records.
+ *
+ * Usage: DataBenchmark [records] [runs]
+ */
+public class DataBenchmark {
+    private static final String[] NAMES = { "ada", "grace", "alan", "edsger", "barbara", "donald" };
+
+    public static void main(String[] args) throws IOException {
+        int records = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        StringBuilder lox = new StringBuilder("var data = list();\nvar r;\n");
+        StringBuilder json = new StringBuilder("[\n");
+        StringBuilder csv = new StringBuilder("id,name,score,active\n");
+        Random random = new Random(42);
+        for (int i = 0; i < records; ++i) {
+            String name = NAMES[random.nextInt(NAMES.length)];
+            double score = random.nextInt(1000) / 10.0;
+            boolean active = random.nextBoolean();
+            lox.append("r = map(); r.put(\"id\", ").append(i).append("); r.put(\"name\", \"")
+                    .append(name).append("\"); r.put(\"score\", ").append(score)
+                    .append("); r.put(\"active\", ").append(active).append("); data.push(r);\n");
+            json.append(i > 0 ? ",\n" : "").append("{\"id\": ").append(i).append(", \"name\": \"")
+                    .append(name).append("\", \"score\": ").append(score)
+                    .append(", \"active\": ").append(active).append("}");
+            csv.append(i).append(',').append(name).append(',').append(score).append(',')
+                    .append(active).append('\n');
+        }
+        json.append("\n]\n");
+
+        Path jsonFile = Files.createTempFile("lox-records", ".json");
+        Path csvFile = Files.createTempFile("lox-records", ".csv");
+        try {
+            Files.writeString(jsonFile, json);
+            Files.writeString(csvFile, csv);
+            String jsonPath = "\"" + jsonFile.toString().replace("\\", "/") + "\"";
+            String csvPath = "\"" + csvFile.toString().replace("\\", "/") + "\"";
+
+            String sumMaps = "var sum = 0;\nfor (r in data) sum = sum + r.get(\"score\");\n";
+            String sumRows = "var sum = 0;\nfor (r in data) if (r.get(0) != \"id\") " +
+                    "sum = sum + parseNumber(r.get(2));\n";
+            String[] names = { "Lox source", "parseJson(text)", "readJson(path)",
+                    "jsonEvents(path)", "parseCsv(text)", "csvRows(path)" };
+            String[] sources = {
+                    lox + sumMaps,
+                    "var data = parseJson(text);\n" + sumMaps,
+                    "var data = readJson(" + jsonPath + ");\n" + sumMaps,
+                    "var events = jsonEvents(" + jsonPath + ");\nevents.next();\nvar sum = 0;\n" +
+                            "while (events.next() == \"object\") sum = sum + events.read().get(\"score\");\n",
+                    "var data = parseCsv(text);\n" + sumRows,
+                    "var data = csvRows(" + csvPath + ");\n" + sumRows,
+            };
+            String[] texts = { null, json.toString(), null, null, csv.toString(), null };
+
+            System.out.printf("%d records: %d KB of Lox, %d KB of JSON, %d KB of CSV%n", records,
+                    lox.length() >> 10, json.length() >> 10, csv.length() >> 10);
+            System.out.printf("%-18s %10s %14s%n", "", "ms", "records/s");
+            LoxEngine engine = new LoxEngine();
+            for (int i = 0; i < names.length; ++i) {
+                for (int run = 0; run < runs; ++run)  // Warm up
+                    run(engine, sources[i], texts[i]);
+
+                long start = System.nanoTime();
+                for (int run = 0; run < runs; ++run)
+                    run(engine, sources[i], texts[i]);
+                double millis = (System.nanoTime() - start) / 1e6 / runs;
+                System.out.printf("%-18s %10.1f %14.0f%n", names[i], millis, records / (millis / 1000));
+            }
+        } finally {
+            Files.delete(jsonFile);
+            Files.delete(csvFile);
+        }
+    }
+
+    // Compiles the script each time, as loading generated source has to
+    private static void run(LoxEngine engine, String source, String text) {
+        PrintStream sink = new PrintStream(OutputStream.nullOutputStream());
+        LoxContext context = engine.newContext(sink, sink);
+        if (text != null)
+            context.interpreter.globals.define("text", text);
+        if (!context.run(source))
+            throw new IllegalStateException("The benchmark script failed.");
+    }
+}
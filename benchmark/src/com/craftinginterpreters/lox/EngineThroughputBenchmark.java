@@ -0,0 +1,85 @@
+package com.craftinginterpreters.lox;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs many independent contexts of one engine in parallel, doubling the number
+ * of threads up to the number of cores, and reports the scripts completed per
+ * second. With no shared mutable state the throughput should scale with the cores.
+ * Each round is run twice: compiling the source in every context, and running
+ * one `Program` compiled up front.
+ *
+ * Usage: EngineThroughputBenchmark [contexts per round]
+ */
+public class EngineThroughputBenchmark {
+    private static final String SCRIPT =
+            "fun fib(n) { if (n < 2) return n; return fib(n - 1) + fib(n - 2); }\n" +
+            "class Counter { init() { this.n = 0; } add(k) { this.n = this.n + k; } }\n" +
+            "var counter = Counter();\n" +
+            "for (var i = 0; i < 50; i = i + 1) counter.add(fib(10));\n" +
+            "print counter.n;\n";
+
+    public static void main(String[] args) throws Exception {
+        int contexts = args.length > 0 ? Integer.parseInt(args[0]) : 4000;
+        int cores = Runtime.getRuntime().availableProcessors();
+        LoxEngine engine = new LoxEngine();
+        PrintStream sink = new PrintStream(OutputStream.nullOutputStream());
+
+        Program program = engine.compile(SCRIPT);
+
+        run(engine, sink, null, cores, contexts);  // Warm up
+        run(engine, sink, program, cores, contexts);
+
+        System.out.printf("%d contexts per round, %d cores%n", contexts, cores);
+        System.out.printf("%8s %14s %9s %14s %9s%n",
+                "threads", "source/s", "speedup", "program/s", "speedup");
+        double sourceBaseline = 0, programBaseline = 0;
+        for (int threads = 1; threads <= cores; threads *= 2) {
+            double source = throughput(engine, sink, null, threads, contexts);
+            double shared = throughput(engine, sink, program, threads, contexts);
+            if (threads == 1) {
+                sourceBaseline = source;
+                programBaseline = shared;
+            }
+            System.out.printf("%8d %14.0f %8.2fx %14.0f %8.2fx%n", threads,
+                    source, source / sourceBaseline, shared, shared / programBaseline);
+        }
+        sink.close();
+    }
+
+    private static double throughput(LoxEngine engine, PrintStream sink, Program program,
+                                     int threads, int contexts) throws Exception {
+        long start = System.nanoTime();
+        run(engine, sink, program, threads, contexts);
+        return contexts / ((System.nanoTime() - start) / 1e9);
+    }
+
+    // Compiles `SCRIPT` in every context unless a shared `program` is given
+    private static void run(LoxEngine engine, PrintStream sink, Program program,
+                            int threads, int contexts) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        AtomicInteger failures = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < contexts; ++i) {
+            futures.add(executor.submit(() -> {
+                LoxContext context = engine.newContext(sink, sink);
+                boolean ok = program == null ? context.run(SCRIPT) : context.run(program);
+                if (!ok)
+                    failures.incrementAndGet();
+            }));
+        }
+        for (Future<?> future : futures)
+            future.get();
+        executor.shutdown();
+
+        if (failures.get() > 0)
+            throw new IllegalStateException(failures.get() + " scripts failed.");
+    }
+}
@@ -0,0 +1,61 @@
+package com.craftinginterpreters.lox;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.time.Duration;
+
+/**
+ * Measures what enforcing an `ExecutionBudget` costs, by running a loop- and
+ * call-heavy script without limits and then with limits high enough never to
+ * be reached (so that every slice is charged to the shared counters and the
+ * deadline is checked). Then shows that a runaway loop is stopped.
+ *
+ * Usage: ExecutionBudgetBenchmark [runs]
+ */
+public class ExecutionBudgetBenchmark {
+    private static final String SCRIPT =
+            "fun fib(n) { if (n < 2) return n; return fib(n - 1) + fib(n - 2); }\n" +
+            "var total = 0;\n" +
+            "for (var i = 0; i < 20000; i = i + 1) total = total + i;\n" +
+            "var text = \"\";\n" +
+            "for (var i = 0; i < 200; i = i + 1) text = \"x\" + i;\n" +
+            "print fib(20) + total;\n";
+
+    public static void main(String[] args) {
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 30;
+        LoxEngine engine = new LoxEngine();
+        Program program = engine.compile(SCRIPT);
+        PrintStream sink = new PrintStream(OutputStream.nullOutputStream());
+        ExecutionBudget limited = new ExecutionBudget(1_000_000_000L, Duration.ofMinutes(10), 1_000_000_000L);
+
+        // Alternate the two, so that both see the same state of the JIT and the machine
+        double unlimitedMillis = 0, limitedMillis = 0;
+        for (int i = 0; i < 2 * runs; ++i) {
+            double unlimited = time(engine, sink, program, ExecutionBudget.UNLIMITED);
+            double budgeted = time(engine, sink, program, limited);
+            if (i >= runs) {  // The first half is warm-up
+                unlimitedMillis += unlimited / runs;
+                limitedMillis += budgeted / runs;
+            }
+        }
+        System.out.printf("%-12s %10.2f ms%n", "unlimited", unlimitedMillis);
+        System.out.printf("%-12s %10.2f ms %+8.1f%%%n", "limited", limitedMillis,
+                100 * (limitedMillis / unlimitedMillis - 1));
+
+        LoxContext context = engine.newContext(sink, sink);
+        long start = System.nanoTime();
+        context.run(engine.compile("while (true) {}"),
+                new ExecutionBudget(Long.MAX_VALUE, Duration.ofMillis(100), Long.MAX_VALUE));
+        System.out.printf("runaway loop stopped after %.0f ms: %b%n",
+                (System.nanoTime() - start) / 1e6, context.exceededBudget());
+    }
+
+    private static double time(LoxEngine engine, PrintStream sink, Program program,
+                               ExecutionBudget budget) {
+        LoxContext context = engine.newContext(sink, sink);
+        long start = System.nanoTime();
+        if (!context.run(program, budget))
+            throw new IllegalStateException("The benchmark script failed.");
+        return (System.nanoTime() - start) / 1e6;
+    }
+}
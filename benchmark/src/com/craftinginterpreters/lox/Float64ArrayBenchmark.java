@@ -0,0 +1,113 @@
+package com.craftinginterpreters.lox;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+/**
+ * Keeps an array of numbers alive, as a `Float64Array` and as a `list()`,
+ * while a script reads and writes its first elements and allocates an
+ * instance for each. Reports the time per element and the collections during
+ * the script, with their total and longest pause, for arrays of growing size.
+ * Run it with a heap smaller than the largest array, e.g.
+ * `-Xmx1g -XX:MaxDirectMemorySize=2g`.
+ *
+ * Usage: Float64ArrayBenchmark [operations] [lengths...]
+ */
+public class Float64ArrayBenchmark {
+    private static final String WORK =
+            "class Particle { init(x) { this.x = x; } }\n" +
+            "var sum = 0;\n" +
+            "for (var i = 0; i < COUNT; i = i + 1) {\n" +
+            "  var p = Particle(data.get(i));\n" +
+            "  data.set(i, p.x + 1);\n" +
+            "  sum = sum + p.x;\n" +
+            "}\n";
+
+    private static final AtomicLong pauses = new AtomicLong();
+    private static final AtomicLong longestPause = new AtomicLong();
+
+    public static void main(String[] args) {
+        int operations = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        long[] lengths = { 1L << 20, 1L << 24, 1L << 27 };
+        if (args.length > 1) {
+            lengths = new long[args.length - 1];
+            for (int i = 1; i < args.length; ++i)
+                lengths[i - 1] = Long.parseLong(args[i]);
+        }
+
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans())
+            ((NotificationEmitter)collector).addNotificationListener((notification, data) -> {
+                if (!notification.getType().equals(
+                        GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION))
+                    return;
+                long pause = GarbageCollectionNotificationInfo
+                        .from((CompositeData)notification.getUserData()).getGcInfo().getDuration();
+                pauses.addAndGet(pause);
+                longestPause.accumulateAndGet(pause, Math::max);
+            }, null, null);
+
+        LoxEngine engine = new LoxEngine();
+        Program work = engine.compile(WORK.replace("COUNT", Integer.toString(operations)));
+        run(engine, work, new LoxFloat64Array(operations));  // Warm up
+        run(engine, work, list(operations));
+
+        System.out.printf("%d operations, max heap %d MB%n", operations,
+                Runtime.getRuntime().maxMemory() >> 20);
+        System.out.printf("%-14s %12s %8s %6s %10s %10s%n",
+                "", "length", "ns/op", "GCs", "pause ms", "max ms");
+        for (long length : lengths) {
+            report("Float64Array", engine, work, length, operations);
+            report("list()", engine, work, length, operations);
+        }
+    }
+
+    private static void report(String name, LoxEngine engine, Program program,
+                               long length, int operations) {
+        Object data;
+        try {
+            data = name.equals("list()") ? list(length) : new LoxFloat64Array(length);
+        } catch (OutOfMemoryError error) {
+            System.out.printf("%-14s %12d %s%n", name, length, "out of memory");
+            return;
+        }
+
+        System.gc();
+        long count = collections();
+        pauses.set(0);
+        longestPause.set(0);
+        long start = System.nanoTime();
+        run(engine, program, data);
+        double nanos = (double)(System.nanoTime() - start) / operations;
+        System.out.printf("%-14s %12d %8.0f %6d %10d %10d%n", name, length, nanos,
+                collections() - count, pauses.get(), longestPause.get());
+    }
+
+    private static LoxList list(long length) {
+        LoxList list = new LoxList();
+        for (long i = 0; i < length; ++i)
+            list.add(0.0);
+        return list;
+    }
+
+    private static long collections() {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans())
+            count += collector.getCollectionCount();
+        return count;
+    }
+
+    private static void run(LoxEngine engine, Program program, Object data) {
+        PrintStream sink = new PrintStream(OutputStream.nullOutputStream());
+        LoxContext context = engine.newContext(sink, sink);
+        context.interpreter.globals.define("data", data);
+        if (!context.run(program))
+            throw new IllegalStateException("The benchmark script failed.");
+    }
+}
@@ -0,0 +1,73 @@
+package com.craftinginterpreters.lox;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Runs a loop over shared globals on a growing number of threads, all child
+ * interpreters of one context, and reports the global accesses per second. The
+ * read loop only reads globals, the write loop also assigns one on every
+ * iteration, so all the threads keep writing to the same cell.
+ *
+ * Usage: GlobalContentionBenchmark [iterations per thread]
+ */
+public class GlobalContentionBenchmark {
+    private static final String GLOBALS =
+            "var a = 1; var b = 2; var c = 3; var total = 0;\n";
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int maxThreads = Math.max(8, 2 * Runtime.getRuntime().availableProcessors());
+
+        LoxEngine engine = new LoxEngine();
+        PrintStream sink = new PrintStream(OutputStream.nullOutputStream());
+        LoxContext context = engine.newContext(sink, sink);
+        context.run(GLOBALS);
+
+        // Three global reads per iteration, plus one global write in `write`
+        Program read = engine.compile("{ var sum = 0; for (var i = 0; i < " + iterations +
+                "; i = i + 1) sum = a + b + c; }");
+        Program write = engine.compile("for (var i = 0; i < " + iterations +
+                "; i = i + 1) total = a + b + c;");
+
+        run(context, read, 1);  // Warm up
+        run(context, write, 1);
+
+        System.out.printf("%d iterations per thread%n", iterations);
+        System.out.printf("%8s %16s %16s%n", "threads", "read access/s", "write access/s");
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            double reads = 3.0 * iterations * threads / run(context, read, threads);
+            double writes = 4.0 * iterations * threads / run(context, write, threads);
+            System.out.printf("%8d %16.0f %16.0f%n", threads, reads, writes);
+        }
+        if (context.hadRuntimeError())
+            throw new IllegalStateException("The benchmark script failed.");
+    }
+
+    // Seconds taken by `threads` threads running `program` at once
+    private static double run(LoxContext context, Program program, int threads)
+            throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < threads; ++i) {
+            Interpreter worker = new Interpreter(context.interpreter);
+            workers.add(Thread.ofPlatform().start(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException error) {
+                    return;
+                }
+                worker.interpret(program);
+            }));
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers)
+            worker.join();
+        return (System.nanoTime() - begin) / 1e9;
+    }
+}
@@ -0,0 +1,75 @@
+package com.craftinginterpreters.lox;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Compares the startup cost of running a prelude in a fresh interpreter with
+ * restoring the snapshot of the globals it leaves behind.
+ *
+ * Usage: HeapSnapshotBenchmark [prelude]
+ * Without a prelude, generated classes, functions, closures and instances are used.
+ */
+public class HeapSnapshotBenchmark {
+    private static final int WARMUP = 200;
+    private static final int ITERATIONS = 1000;
+
+    public static void main(String[] args) throws IOException {
+        String source;
+        if (args.length > 0) {
+            source = new String(Files.readAllBytes(Paths.get(args[0])), Charset.defaultCharset());
+        } else {
+            StringBuilder prelude = new StringBuilder(ProgramCacheBenchmark.generatePrelude(200));
+            for (int i = 0; i < 200; ++i) {
+                prelude.append("var shape").append(i).append(" = Shape").append(i)
+                       .append("(").append(i).append(", 2);\n")
+                       .append("var adder").append(i).append(" = helper").append(i)
+                       .append("(").append(i % 10).append(");\n");
+            }
+            source = prelude.toString();
+        }
+
+        Path directory = Files.createTempDirectory("lox-snapshot");
+        ProgramCache cache = new ProgramCache(directory);
+        Interpreter prepared = new Interpreter();
+        runPrelude(source, prepared);
+        cache.storeSnapshot(source, prepared);
+
+        long start = System.nanoTime();
+        runPrelude(source, new Interpreter());
+        long coldRun = System.nanoTime() - start;
+        start = System.nanoTime();
+        cache.loadSnapshot(source, new Interpreter());
+        long coldRestore = System.nanoTime() - start;
+
+        for (int i = 0; i < WARMUP; ++i) {
+            runPrelude(source, new Interpreter());
+            cache.loadSnapshot(source, new Interpreter());
+        }
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; ++i)
+            runPrelude(source, new Interpreter());
+        long warmRun = (System.nanoTime() - start) / ITERATIONS;
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; ++i)
+            cache.loadSnapshot(source, new Interpreter());
+        long warmRestore = (System.nanoTime() - start) / ITERATIONS;
+
+        System.out.printf("prelude: %d chars, %d globals%n", source.length(),
+                prepared.globals.bindings().size());
+        System.out.printf("%-8s %14s %14s%n", "", "run prelude", "snapshot");
+        System.out.printf("%-8s %11.3f ms %11.3f ms%n", "cold", coldRun / 1e6, coldRestore / 1e6);
+        System.out.printf("%-8s %11.3f ms %11.3f ms%n", "warm", warmRun / 1e6, warmRestore / 1e6);
+    }
+
+    private static void runPrelude(String source, Interpreter interpreter) {
+        ErrorReporter reporter = interpreter.reporter;
+        List<Stmt> statements = new Parser(new Scanner(source, reporter).scanTokens(), reporter).parse();
+        new Resolver(reporter).resolve(statements);
+        interpreter.interpret(statements);
+    }
+}
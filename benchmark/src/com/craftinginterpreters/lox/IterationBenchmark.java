@@ -0,0 +1,89 @@
+package com.craftinginterpreters.lox;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Sums the numbers below a bound with the `for` loop, which is desugared into
+ * a `while` with index math, and with `for-in` over a range, over a list and
+ * over an iterator written in Lox. Reports the time per run and the bytes
+ * allocated per element. Each `sum + i` allocates a number; the last loop, whose
+ * body doesn't read its variable, shows what a range loop costs on its own.
+ *
+ * Usage: IterationBenchmark [elements] [runs]
+ */
+public class IterationBenchmark {
+    private static final String COUNTED =
+            "var sum = 0;\n" +
+            "for (var i = 0; i < COUNT; i = i + 1) sum = sum + i;\n";
+    private static final String RANGE =
+            "var sum = 0;\n" +
+            "for (i in range(0, COUNT)) sum = sum + i;\n";
+    private static final String LIST =
+            "var sum = 0;\n" +
+            "for (i in elements) sum = sum + i;\n";
+    private static final String ITERATOR =
+            "class Counter {\n" +
+            "  init(end) { this.current = 0; this.end = end; }\n" +
+            "  hasNext() { return this.current < this.end; }\n" +
+            "  next() { this.current = this.current + 1; return this.current - 1; }\n" +
+            "}\n" +
+            "var sum = 0;\n" +
+            "for (i in Counter(COUNT)) sum = sum + i;\n";
+    private static final String UNREAD =
+            "var sum = 0;\n" +
+            "for (i in range(0, COUNT)) sum;\n";
+
+    public static void main(String[] args) {
+        int elements = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        LoxEngine engine = new LoxEngine();
+        String count = Integer.toString(elements);
+        String[] names = {
+                "for", "for-in range", "for-in list", "for-in Lox iterator", "for-in range, i unread"
+        };
+        Program[] programs = {
+                engine.compile(COUNTED.replace("COUNT", count)),
+                engine.compile(RANGE.replace("COUNT", count)),
+                engine.compile(LIST),
+                engine.compile(ITERATOR.replace("COUNT", count)),
+                engine.compile(UNREAD.replace("COUNT", count)),
+        };
+
+        PrintStream sink = new PrintStream(OutputStream.nullOutputStream());
+        LoxContext context = engine.newContext(sink, sink);
+        LoxList list = new LoxList();
+        for (int i = 0; i < elements; ++i)
+            list.add((double)i);
+        context.interpreter.globals.define("elements", list);
+
+        for (int i = 0; i < runs; ++i)  // Warm up
+            for (Program program : programs)
+                run(context, program);
+
+        System.out.printf("%d elements%n", elements);
+        System.out.printf("%-24s %10s %14s%n", "", "ms", "bytes/element");
+        for (int i = 0; i < programs.length; ++i)
+            report(names[i], context, programs[i], elements, runs);
+    }
+
+    private static void report(String name, LoxContext context, Program program,
+                               int elements, int runs) {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+        long allocated = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < runs; ++i)
+            run(context, program);
+        double millis = (System.nanoTime() - start) / 1e6 / runs;
+        double bytes = (double)(threads.getCurrentThreadAllocatedBytes() - allocated) / runs / elements;
+        System.out.printf("%-24s %10.1f %14.1f%n", name, millis, bytes);
+    }
+
+    private static void run(LoxContext context, Program program) {
+        if (!context.run(program))
+            throw new IllegalStateException("The benchmark script failed.");
+    }
+}
@@ -0,0 +1,74 @@
+package com.craftinginterpreters.lox;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.ref.Reference;
+
+/**
+ * Compares a native `list()` with the usual emulation of a list by a chain of
+ * instances: the time to build one of numbers and sum it, and the heap it
+ * takes once built.
+ *
+ * Usage: ListBenchmark [elements] [runs]
+ */
+public class ListBenchmark {
+    private static final String LINKED =
+            "class Node { init(value, next) { this.value = value; this.next = next; } }\n" +
+            "var head = nil;\n" +
+            "for (var i = 0; i < COUNT; i = i + 1) head = Node(i, head);\n" +
+            "var sum = 0;\n" +
+            "var node = head;\n" +
+            "while (node != nil) { sum = sum + node.value; node = node.next; }\n";
+    private static final String NATIVE =
+            "var elements = list();\n" +
+            "for (var i = 0; i < COUNT; i = i + 1) elements.push(i);\n" +
+            "var sum = 0;\n" +
+            "for (var i = 0; i < elements.length(); i = i + 1) sum = sum + elements.get(i);\n";
+
+    public static void main(String[] args) {
+        int elements = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        LoxEngine engine = new LoxEngine();
+        Program linked = engine.compile(LINKED.replace("COUNT", Integer.toString(elements)));
+        Program nativeList = engine.compile(NATIVE.replace("COUNT", Integer.toString(elements)));
+
+        for (int i = 0; i < runs; ++i) {  // Warm up
+            run(engine, linked);
+            run(engine, nativeList);
+        }
+
+        System.out.printf("%d elements%n", elements);
+        System.out.printf("%-16s %10s %12s%n", "", "ms", "heap MB");
+        report(engine, "linked instances", linked, runs);
+        report(engine, "list()", nativeList, runs);
+    }
+
+    private static void report(LoxEngine engine, String name, Program program, int runs) {
+        long start = System.nanoTime();
+        for (int i = 0; i < runs; ++i)
+            run(engine, program);
+        double millis = (System.nanoTime() - start) / 1e6 / runs;
+
+        long before = usedHeap();
+        LoxContext context = run(engine, program);
+        long retained = usedHeap() - before;
+        System.out.printf("%-16s %10.1f %12.1f%n", name, millis, retained / 1e6);
+        Reference.reachabilityFence(context);  // What it built must be alive when measured
+    }
+
+    private static LoxContext run(LoxEngine engine, Program program) {
+        PrintStream sink = new PrintStream(OutputStream.nullOutputStream());
+        LoxContext context = engine.newContext(sink, sink);
+        if (!context.run(program))
+            throw new IllegalStateException("The benchmark script failed.");
+        return context;
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; ++i)
+            System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,101 @@
+package com.craftinginterpreters.lox;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.ref.Reference;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Fills maps of 1M entries, with number keys and with string keys, and reports
+ * the time to put and then get every entry and the heap the map holds, for
+ * `LoxMap` and for a `java.util.HashMap` holding the same boxed values. Then
+ * runs the same work from a Lox script through `map()`.
+ *
+ * Usage: MapBenchmark [entries] [runs]
+ */
+public class MapBenchmark {
+    public static void main(String[] args) {
+        int entries = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        Object[] numbers = new Object[entries];
+        Object[] strings = new Object[entries];
+        for (int i = 0; i < entries; ++i) {
+            numbers[i] = (double)i;
+            strings[i] = "key" + i;
+        }
+
+        for (int i = 0; i < runs; ++i) {  // Warm up
+            fillLoxMap(numbers);
+            fillHashMap(numbers);
+        }
+
+        System.out.printf("%d entries%n", entries);
+        System.out.printf("%-20s %10s %12s%n", "", "ms", "heap MB");
+        report("LoxMap, numbers", runs, () -> fillLoxMap(numbers));
+        report("HashMap, numbers", runs, () -> fillHashMap(numbers));
+        report("LoxMap, strings", runs, () -> fillLoxMap(strings));
+        report("HashMap, strings", runs, () -> fillHashMap(strings));
+
+        String script =
+                "var m = map();\n" +
+                "for (var i = 0; i < " + entries + "; i = i + 1) m.put(i, i);\n" +
+                "var sum = 0;\n" +
+                "for (var i = 0; i < " + entries + "; i = i + 1) sum = sum + m.get(i);\n";
+        LoxEngine engine = new LoxEngine();
+        Program program = engine.compile(script);
+        PrintStream sink = new PrintStream(OutputStream.nullOutputStream());
+        report("map() in Lox", runs, () -> {
+            LoxContext context = engine.newContext(sink, sink);
+            if (!context.run(program))
+                throw new IllegalStateException("The benchmark script failed.");
+            return context;
+        });
+    }
+
+    private interface Fill {
+        Object run();  // Returns what holds the map
+    }
+
+    private static Object fillLoxMap(Object[] keys) {
+        LoxMap map = new LoxMap();
+        for (Object key : keys)
+            map.put(key, key);
+        for (Object key : keys)
+            if (map.get(key) != key)
+                throw new IllegalStateException("Missing key " + key + ".");
+        return map;
+    }
+
+    // `HashMap` needs the boxed keys to stay alive, `LoxMap` only keeps their bits
+    private static Object fillHashMap(Object[] keys) {
+        Map<Object, Object> map = new HashMap<>();
+        for (Object key : keys)
+            map.put(key instanceof Double ? Double.valueOf((double)key) : key, key);
+        for (Object key : keys)
+            if (map.get(key) != key)
+                throw new IllegalStateException("Missing key " + key + ".");
+        return map;
+    }
+
+    private static void report(String name, int runs, Fill fill) {
+        long start = System.nanoTime();
+        for (int i = 0; i < runs; ++i)
+            fill.run();
+        double millis = (System.nanoTime() - start) / 1e6 / runs;
+
+        long before = usedHeap();
+        Object map = fill.run();
+        long retained = usedHeap() - before;
+        Reference.reachabilityFence(map);
+        System.out.printf("%-20s %10.1f %12.1f%n", name, millis, retained / 1e6);
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; ++i)
+            System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
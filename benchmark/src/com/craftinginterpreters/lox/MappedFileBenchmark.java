@@ -0,0 +1,110 @@
+package com.craftinginterpreters.lox;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * Scans a log file for the lines containing "ERROR": line by line with
+ * `lines(path)`, and through `mapFile(path)` with `lines()`, with `grep(text)`
+ * and with `count(text)`. The first two read every line as a string and only
+ * count them, since Lox has no string search. Reports the time, the throughput,
+ * the bytes allocated per line and the peak heap use of each scan.
+ *
+ * Usage: MappedFileBenchmark [megabytes | path]
+ */
+public class MappedFileBenchmark {
+    private static final String[] LEVELS = { "INFO", "INFO", "INFO", "DEBUG", "WARN", "ERROR" };
+
+    public static void main(String[] args) throws IOException {
+        Path path;
+        boolean generated = args.length == 0 || args[0].matches("\\d+");
+        if (generated) {
+            long megabytes = args.length > 0 ? Long.parseLong(args[0]) : 2048;
+            path = Files.createTempFile("lox-log", ".txt");
+            generate(path, megabytes << 20);
+        } else {
+            path = Paths.get(args[0]);
+        }
+
+        try {
+            String file = "\"" + path.toString().replace("\\", "/") + "\"";
+            String[] names = { "lines(path)", "mapFile lines()", "mapFile grep()", "mapFile count()" };
+            String[] sources = {
+                    "var n = 0; for (line in lines(FILE)) n = n + 1; print n;",
+                    "var n = 0; for (line in mapFile(FILE).lines()) n = n + 1; print n;",
+                    "var n = 0; for (line in mapFile(FILE).grep(\"ERROR\")) n = n + 1; print n;",
+                    "print mapFile(FILE).count(\"ERROR\");",
+            };
+
+            long bytes = Files.size(path);
+            long lines;
+            try (var stream = Files.lines(path, StandardCharsets.UTF_8)) {
+                lines = stream.count();
+            }
+            System.out.printf("%d MB, %d lines%n", bytes >> 20, lines);
+            System.out.printf("%-18s %10s %8s %12s %10s %10s%n",
+                    "", "ms", "MB/s", "bytes/line", "peak MB", "result");
+
+            LoxEngine engine = new LoxEngine();
+            for (int i = 0; i < names.length; ++i)
+                report(names[i], engine, engine.compile(sources[i].replace("FILE", file)),
+                        bytes, lines);
+        } finally {
+            if (generated)
+                Files.delete(path);
+        }
+    }
+
+    private static void report(String name, LoxEngine engine, Program program,
+                               long bytes, long lines) {
+        java.io.ByteArrayOutputStream result = new java.io.ByteArrayOutputStream();
+        PrintStream out = new PrintStream(result);
+        PrintStream sink = new PrintStream(OutputStream.nullOutputStream());
+        LoxContext context = engine.newContext(out, sink);
+
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+            pool.resetPeakUsage();
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+        long allocated = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        if (!context.run(program))
+            throw new IllegalStateException("The benchmark script failed.");
+        double millis = (System.nanoTime() - start) / 1e6;
+        double perLine = (double)(threads.getCurrentThreadAllocatedBytes() - allocated) / lines;
+
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+            if (pool.getType() == MemoryType.HEAP)
+                peak += pool.getPeakUsage().getUsed();
+        System.out.printf("%-18s %10.0f %8.0f %12.1f %10d %10s%n", name, millis,
+                (bytes >> 20) / (millis / 1000), perLine, peak >> 20,
+                result.toString().trim());
+    }
+
+    private static void generate(Path path, long size) throws IOException {
+        Random random = new Random(42);
+        long written = 0;
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            for (long i = 0; written < size; ++i) {
+                String line = String.format("2024-01-01T00:%02d:%02d.%03d %-5s [worker-%d] request %d took %d ms",
+                        i / 60000 % 60, i / 1000 % 60, i % 1000, LEVELS[random.nextInt(LEVELS.length)],
+                        random.nextInt(16), i, random.nextInt(1000));
+                writer.write(line);
+                writer.newLine();
+                written += line.length() + 1;
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.craftinginterpreters.lox;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * Calls a pure numeric helper with few distinct arguments, and then with more
+ * distinct arguments than a cache holds, without memoization, with `memoize`
+ * and with pure functions memoized automatically. Reports the time per run and
+ * the hit rate and size of the cache.
+ *
+ * Usage: MemoBenchmark [calls] [runs]
+ */
+public class MemoBenchmark {
+    private static final String HELPER =
+            "fun series(x) {\n" +
+            "  var sum = 0;\n" +
+            "  for (var k = 1; k <= 50; k = k + 1) sum = sum + x / (k * k);\n" +
+            "  return sum;\n" +
+            "}\n";
+
+    public static void main(String[] args) {
+        int calls = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        System.out.printf("%d calls%n", calls);
+        System.out.printf("%-28s %10s %10s %8s%n", "", "ms", "hit rate", "size");
+        for (int distinct : new int[] { 100, 4 * MemoizedFunction.CAPACITY }) {
+            String loop = "var sum = 0;\n" +
+                    "for (var round = 0; round < " + (calls / distinct) + "; round = round + 1)\n" +
+                    "  for (var x = 0; x < " + distinct + "; x = x + 1) sum = sum + F(x);\n";
+            run("plain, " + distinct + " arguments", false,
+                    HELPER + loop.replace("F(", "series("), runs);
+            run("memoize, " + distinct + " arguments", false,
+                    HELPER + "var memo = memoize(series);\n" + loop.replace("F(", "memo(") +
+                    "var stats = memoStats(memo);\n", runs);
+            run("automatic, " + distinct + " arguments", true,
+                    HELPER + loop.replace("F(", "series(") +
+                    "var stats = memoStats(series);\n", runs);
+        }
+    }
+
+    private static void run(String name, boolean automatic, String source, int runs) {
+        LoxEngine engine = new LoxEngine();
+        engine.memoizePureFunctions(automatic);
+        Program program = engine.compile(source);
+        PrintStream sink = new PrintStream(OutputStream.nullOutputStream());
+
+        for (int i = 0; i < runs; ++i)  // Warm up, each run with a cache of its own
+            execute(engine.newContext(sink, sink), program);
+
+        long start = System.nanoTime();
+        LoxContext context = null;
+        for (int i = 0; i < runs; ++i)
+            context = execute(engine.newContext(sink, sink), program);
+        double millis = (System.nanoTime() - start) / 1e6 / runs;
+
+        Object stats = context.interpreter.globals.bindings().get("stats");
+        if (stats instanceof LoxMap) {
+            LoxMap map = (LoxMap)stats;
+            double hits = (double)map.get("hits");
+            double misses = (double)map.get("misses");
+            System.out.printf("%-28s %10.1f %9.1f%% %8.0f%n", name, millis,
+                    100 * hits / (hits + misses), (double)map.get("size"));
+        } else {
+            System.out.printf("%-28s %10.1f %10s %8s%n", name, millis, "-", "-");
+        }
+    }
+
+    private static LoxContext execute(LoxContext context, Program program) {
+        if (!context.run(program))
+            throw new IllegalStateException("The benchmark script failed.");
+        return context;
+    }
+}
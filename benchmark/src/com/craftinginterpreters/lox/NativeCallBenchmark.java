@@ -0,0 +1,82 @@
+package com.craftinginterpreters.lox;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.Method;
+
+/**
+ * Times a script that calls a two-argument native in a loop, with the native
+ * bound through `NativeRegistry`, written by hand as a `NativeFunction` that
+ * checks and unboxes its arguments itself, and called through reflection with
+ * `Method.invoke` as a naive registry would. An empty loop gives the cost of
+ * the interpreter alone.
+ *
+ * Usage: NativeCallBenchmark [calls] [runs]
+ */
+public class NativeCallBenchmark {
+    @LoxNative
+    static double hypot(double x, double y) {
+        return Math.sqrt(x * x + y * y);
+    }
+
+    public static void main(String[] args) throws ReflectiveOperationException {
+        int calls = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        LoxEngine engine = new LoxEngine();
+        engine.defineNatives(NativeCallBenchmark.class);
+        Method method = NativeCallBenchmark.class.getDeclaredMethod("hypot",
+                double.class, double.class);
+
+        LoxCallable handWritten = new NativeFunction(2, (interpreter, arguments) -> {
+            if (!(arguments.get(0) instanceof Double x) || !(arguments.get(1) instanceof Double y))
+                throw new NativeError("Arguments must be numbers.");
+            return hypot(x, y);
+        });
+        LoxCallable reflective = new NativeFunction(2, (interpreter, arguments) -> {
+            try {
+                return method.invoke(null, arguments.toArray());
+            } catch (ReflectiveOperationException error) {
+                throw new NativeError(error.getMessage());
+            }
+        });
+
+        String loop = "var sum = 0;\n" +
+                "for (var i = 0; i < " + calls + "; i = i + 1) sum = sum + CALL;\n";
+        Program empty = engine.compile(loop.replace("CALL", "i"));
+        Program calling = engine.compile(loop.replace("CALL", "hypot(i, 1)"));
+
+        PrintStream sink = new PrintStream(OutputStream.nullOutputStream());
+        LoxContext registered = engine.newContext(sink, sink);
+        LoxContext byHand = engine.newContext(sink, sink);
+        byHand.interpreter.globals.define("hypot", handWritten);
+        LoxContext byReflection = engine.newContext(sink, sink);
+        byReflection.interpreter.globals.define("hypot", reflective);
+
+        for (int i = 0; i < runs; ++i) {  // Warm up
+            run(registered, empty);
+            run(registered, calling);
+            run(byHand, calling);
+            run(byReflection, calling);
+        }
+
+        System.out.printf("%d calls%n", calls);
+        System.out.printf("%-16s %10s%n", "", "ms");
+        report("empty loop", registered, empty, runs);
+        report("NativeRegistry", registered, calling, runs);
+        report("by hand", byHand, calling, runs);
+        report("Method.invoke", byReflection, calling, runs);
+    }
+
+    private static void report(String name, LoxContext context, Program program, int runs) {
+        long start = System.nanoTime();
+        for (int i = 0; i < runs; ++i)
+            run(context, program);
+        System.out.printf("%-16s %10.1f%n", name, (System.nanoTime() - start) / 1e6 / runs);
+    }
+
+    private static void run(LoxContext context, Program program) {
+        if (!context.run(program))
+            throw new IllegalStateException("The benchmark script failed.");
+    }
+}
@@ -0,0 +1,69 @@
+package com.craftinginterpreters.lox;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Maps a CPU-bound Lox function over a list, sequentially with a `for` loop and
+ * with `parallelMap`, which runs in the pool of its caller. The parallel run is
+ * repeated in pools of doubling parallelism up to the number of cores; since the
+ * function is pure, the speedup should grow close to linearly with the workers.
+ *
+ * Usage: ParallelNativesBenchmark [elements] [runs]
+ */
+public class ParallelNativesBenchmark {
+    private static final String PRELUDE =
+            "fun fib(n) { if (n < 2) return n; return fib(n - 1) + fib(n - 2); }\n" +
+            "fun work(n) { return fib(12) + n; }\n";
+
+    public static void main(String[] args) throws Exception {
+        int elements = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        String setup = PRELUDE +
+                "var numbers = list();\n" +
+                "for (var i = 0; i < " + elements + "; i = i + 1) numbers.push(i);\n";
+        Program sequential = compile(setup +
+                "var results = list();\n" +
+                "for (var i = 0; i < numbers.length(); i = i + 1)\n" +
+                "  results.push(work(numbers.get(i)));\n");
+        Program parallel = compile(setup + "var results = parallelMap(numbers, work);\n");
+
+        // Warm up
+        time(sequential, null, runs);
+        time(parallel, ForkJoinPool.commonPool(), runs);
+
+        System.out.printf("%d elements, %d cores%n", elements, cores);
+        double baseline = time(sequential, null, runs);
+        System.out.printf("%-20s %10.1f ms%n", "sequential", baseline);
+        for (int workers = 1; workers <= cores; workers *= 2) {
+            ForkJoinPool pool = new ForkJoinPool(workers);
+            double millis = time(parallel, pool, runs);
+            pool.shutdown();
+            System.out.printf("%-20s %10.1f ms %8.2fx%n",
+                    "parallelMap x" + workers, millis, baseline / millis);
+        }
+    }
+
+    private static Program compile(String source) {
+        Program program = new LoxEngine().compile(source);
+        if (program == null)
+            throw new IllegalStateException("The benchmark script does not compile.");
+        return program;
+    }
+
+    // Average milliseconds per run of `program`, inside `pool` if there is one
+    private static double time(Program program, ForkJoinPool pool, int runs) throws Exception {
+        PrintStream sink = new PrintStream(OutputStream.nullOutputStream());
+        long start = System.nanoTime();
+        for (int i = 0; i < runs; ++i) {
+            LoxContext context = new LoxEngine().newContext(sink, sink);
+            boolean ok = pool == null ? context.run(program) : pool.submit(() -> context.run(program)).get();
+            if (!ok)
+                throw new IllegalStateException("The benchmark script failed.");
+        }
+        return (System.nanoTime() - start) / 1e6 / runs;
+    }
+}
@@ -0,0 +1,105 @@
+package com.craftinginterpreters.lox;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs a script that echoes its standard input, in a child JVM, as a stage of
+ * a pipeline: with the default output, which is flushed at every line, and
+ * with `-Dlox.pipe=true`. Reports the throughput for many lines, and the
+ * latency of single lines written one at a time, from the write to the echo.
+ *
+ * Usage: PipeBenchmark [lines] [pings]
+ */
+public class PipeBenchmark {
+    private static final String ECHO = "for (line in stdin()) print line;\n";
+    private static final String LINE = "2024-01-01T00:00:00.000 INFO  [worker-3] request 42 took 17 ms\n";
+
+    public static void main(String[] args) throws Exception {
+        int lines = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int pings = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+
+        Path script = Files.createTempFile("lox-echo", ".lox");
+        Files.writeString(script, ECHO);
+        try {
+            System.out.printf("%d lines of %d bytes, %d pings%n", lines, LINE.length(), pings);
+            System.out.printf("%-16s %10s %10s %14s%n", "", "ms", "MB/s", "latency ms");
+            for (boolean pipe : new boolean[] { false, true }) {
+                double millis = throughput(script, pipe, lines);
+                double latency = latency(script, pipe, pings);
+                System.out.printf("%-16s %10.0f %10.1f %14.2f%n", pipe ? "-Dlox.pipe=true" : "default",
+                        millis, (double)lines * LINE.length() / (1 << 20) / (millis / 1000), latency);
+            }
+        } finally {
+            Files.delete(script);
+        }
+    }
+
+    private static double throughput(Path script, boolean pipe, int lines) throws Exception {
+        Process process = start(script, pipe);
+        long start = System.nanoTime();
+        Thread writer = new Thread(() -> {
+            try (OutputStream in = process.getOutputStream()) {
+                byte[] line = LINE.getBytes(StandardCharsets.UTF_8);
+                for (int i = 0; i < lines; ++i)
+                    in.write(line);
+            } catch (IOException error) {
+                throw new RuntimeException(error);
+            }
+        });
+        writer.start();
+
+        long received = 0;
+        byte[] buffer = new byte[1 << 16];
+        try (InputStream out = process.getInputStream()) {
+            for (int read; (read = out.read(buffer)) >= 0; )
+                received += read;
+        }
+        writer.join();
+        process.waitFor();
+        if (received != (long)lines * LINE.length())
+            throw new IllegalStateException("Received " + received + " bytes.");
+        return (System.nanoTime() - start) / 1e6;
+    }
+
+    // The mean time for a line to come back once written
+    private static double latency(Path script, boolean pipe, int pings) throws Exception {
+        Process process = start(script, pipe);
+        OutputStream in = process.getOutputStream();
+        BufferedReader out = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+
+        List<Long> samples = new ArrayList<>();
+        for (int i = 0; i < pings + 5; ++i) {
+            long start = System.nanoTime();
+            in.write(LINE.getBytes(StandardCharsets.UTF_8));
+            in.flush();
+            if (out.readLine() == null)
+                throw new IllegalStateException("The script ended early.");
+            if (i >= 5)  // Once warmed up
+                samples.add(System.nanoTime() - start);
+            Thread.sleep(20);
+        }
+        in.close();
+        process.waitFor();
+        return samples.stream().mapToLong(Long::longValue).average().orElse(0) / 1e6;
+    }
+
+    private static Process start(Path script, boolean pipe) throws IOException {
+        String java = ProcessHandle.current().info().command().orElse("java");
+        List<String> command = new ArrayList<>(List.of(java, "-cp", System.getProperty("java.class.path")));
+        if (pipe)
+            command.add("-Dlox.pipe=true");
+        command.add(Lox.class.getName());
+        command.add(script.toString());
+        return new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+    }
+}
@@ -0,0 +1,76 @@
+package com.craftinginterpreters.lox;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Measures the overhead of profiling on a script made mostly of calls, where
+ * it is the highest: the script runs without a profiler, then with one
+ * attached that samples every 10 ms, 1 ms and 0.1 ms, in turn. Reports the
+ * best time of each, the slowdown and the number of samples per run.
+ *
+ * Usage: ProfilerBenchmark [n] [runs]
+ */
+public class ProfilerBenchmark {
+    private static final String SCRIPT =
+            "class Point { init(x, y) { this.x = x; this.y = y; } }\n" +
+            "fun fib(n) {\n" +
+            "  if (n < 2) return n;\n" +
+            "  return fib(n - 2) + fib(n - 1);\n" +
+            "}\n" +
+            "var add = fun (a, b) { return Point(a.x + b.x, a.y + b.y); };\n" +
+            "var p = Point(0, 0);\n" +
+            "for (var i = 0; i < 100000; i = i + 1) p = add(p, Point(1, 1));\n" +
+            "print fib(N) + p.x;\n";
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 25;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        String source = SCRIPT.replace("N", Integer.toString(n));
+        LoxEngine engine = new LoxEngine();
+        Program program = engine.compile(source);
+
+        String[] names = { "not profiled", "every 10 ms", "every 1 ms", "every 0.1 ms" };
+        Duration[] intervals = { null, Duration.ofMillis(10), Duration.ofMillis(1), Duration.ofNanos(100_000) };
+
+        for (int run = 0; run < runs; ++run)  // Warm up
+            for (Duration interval : intervals)
+                run(engine, program, interval);
+
+        // Interleaved, so every configuration runs as warmed up as the others
+        double[] best = new double[names.length];
+        int[] samples = new int[names.length];
+        Arrays.fill(best, Double.MAX_VALUE);
+        for (int run = 0; run < runs; ++run) {
+            for (int i = 0; i < names.length; ++i) {
+                long start = System.nanoTime();
+                samples[i] += run(engine, program, intervals[i]);
+                best[i] = Math.min(best[i], (System.nanoTime() - start) / 1e6);
+            }
+        }
+
+        System.out.printf("%-14s %10s %10s %10s%n", "", "best ms", "slowdown", "samples");
+        for (int i = 0; i < names.length; ++i)
+            System.out.printf("%-14s %10.1f %9.2fx %10d%n",
+                    names[i], best[i], best[i] / best[0], samples[i] / runs);
+    }
+
+    // The number of samples taken
+    private static int run(LoxEngine engine, Program program, Duration interval) {
+        PrintStream sink = new PrintStream(OutputStream.nullOutputStream());
+        LoxContext context = engine.newContext(sink, sink);
+        LoxProfiler profiler = null;
+        if (interval != null) {
+            profiler = new LoxProfiler(interval);
+            profiler.attach(context.interpreter);
+            profiler.start();
+        }
+        if (!context.run(program))
+            throw new IllegalStateException("The benchmark script failed.");
+        if (profiler == null)  return 0;
+        profiler.stop();
+        return profiler.sampleCount();
+    }
+}
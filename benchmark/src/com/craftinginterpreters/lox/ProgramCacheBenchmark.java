@@ -0,0 +1,86 @@
+package com.craftinginterpreters.lox;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Compares the time it takes to get a runnable program out of the front end
+ * (scanner, parser and resolver) with loading it from a `ProgramCache` entry.
+ *
+ * Usage: ProgramCacheBenchmark [script]
+ * Without a script, a prelude of generated classes and functions is used.
+ */
+public class ProgramCacheBenchmark {
+    private static final int WARMUP = 200;
+    private static final int ITERATIONS = 1000;
+
+    public static void main(String[] args) throws IOException {
+        String source = args.length > 0
+                ? new String(Files.readAllBytes(Paths.get(args[0])), Charset.defaultCharset())
+                : generatePrelude(200);
+
+        Path directory = Files.createTempDirectory("lox-cache");
+        ProgramCache cache = new ProgramCache(directory);
+        cache.store(source, compile(source));
+
+        // Cold: the first program a fresh JVM gets to run
+        long start = System.nanoTime();
+        compile(source);
+        long coldCompile = System.nanoTime() - start;
+        start = System.nanoTime();
+        cache.load(source);
+        long coldLoad = System.nanoTime() - start;
+
+        // Warm: the steady state after the JIT has caught up
+        for (int i = 0; i < WARMUP; ++i) {
+            compile(source);
+            cache.load(source);
+        }
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; ++i)
+            compile(source);
+        long warmCompile = (System.nanoTime() - start) / ITERATIONS;
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; ++i)
+            cache.load(source);
+        long warmLoad = (System.nanoTime() - start) / ITERATIONS;
+
+        System.out.printf("source: %d chars%n", source.length());
+        System.out.printf("%-8s %14s %14s%n", "", "front end", "cache");
+        System.out.printf("%-8s %11.3f ms %11.3f ms%n", "cold", coldCompile / 1e6, coldLoad / 1e6);
+        System.out.printf("%-8s %11.3f ms %11.3f ms%n", "warm", warmCompile / 1e6, warmLoad / 1e6);
+    }
+
+    private static Program compile(String source) {
+        ErrorReporter reporter = new ErrorReporter(System.err);
+        List<Stmt> statements = new Parser(new Scanner(source, reporter).scanTokens(), reporter).parse();
+        new Resolver(reporter).resolve(statements);
+        return new Program(statements);
+    }
+
+    static String generatePrelude(int count) {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < count; ++i) {
+            source.append("class Shape").append(i).append(" {\n")
+                  .append("  init(width, height) {\n")
+                  .append("    this.width = width;\n")
+                  .append("    this.height = height;\n")
+                  .append("  }\n")
+                  .append("  area() { return this.width * this.height; }\n")
+                  .append("  describe() { return \"shape ").append(i).append(" of area \" + this.area(); }\n")
+                  .append("}\n")
+                  .append("fun helper").append(i).append("(n) {\n")
+                  .append("  var total = 0;\n")
+                  .append("  for (var k = 0; k < n; k = k + 1) {\n")
+                  .append("    if (k > ").append(i).append(" and total < 1000) total = total + k;\n")
+                  .append("  }\n")
+                  .append("  return fun (x) { return total + x; };\n")
+                  .append("}\n");
+        }
+        return source.toString();
+    }
+}
@@ -0,0 +1,90 @@
+package com.craftinginterpreters.lox;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.regex.Pattern;
+
+/**
+ * Calls `find(pattern, line)` in a Lox loop with a single pattern, which is
+ * compiled once and then found in the cache, and cycling through more distinct
+ * patterns than the cache holds, so that each call compiles its pattern as
+ * it would without a cache. Compares both with the same search in Java, with
+ * the pattern compiled once, and reports the cache statistics of each.
+ *
+ * Usage: RegexBenchmark [calls] [runs]
+ */
+public class RegexBenchmark {
+    private static final String LINE = "2024-01-01T00:00:00.000 ERROR [worker-3] request 42 took 17 ms";
+
+    private static final String CACHED =
+            "var n = 0;\n" +
+            "for (i in range(0, COUNT))\n" +
+            "  if (find(\"took (\\d+) ms\", line)) n = n + 1;\n";
+    private static final String MISSED =
+            "var patterns = list();\n" +
+            "for (i in range(0, PATTERNS)) patterns.push(\"took (\\d+) ms|\" + i);\n" +
+            "var n = 0;\n" +
+            "var p = 0;\n" +
+            "for (i in range(0, COUNT)) {\n" +
+            "  if (find(patterns.get(p), line)) n = n + 1;\n" +
+            "  p = p + 1;\n" +
+            "  if (p == PATTERNS) p = 0;\n" +
+            "}\n";
+
+    public static void main(String[] args) {
+        int calls = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        LoxEngine engine = new LoxEngine();
+        String count = Integer.toString(calls);
+        Program cached = engine.compile(CACHED.replace("COUNT", count));
+        Program missed = engine.compile(MISSED.replace("COUNT", count)
+                .replace("PATTERNS", Integer.toString(RegexNatives.CAPACITY * 2)));
+
+        for (int i = 0; i < runs; ++i) {  // Warm up
+            run(engine, cached);
+            run(engine, missed);
+            java(calls);
+        }
+
+        System.out.printf("%d calls, cache of %d patterns%n", calls, RegexNatives.CAPACITY);
+        System.out.printf("%-22s %10s %10s %10s%n", "", "ns/call", "hits", "misses");
+        report("Lox, one pattern", engine, cached, calls, runs);
+        report("Lox, cache missed", engine, missed, calls, runs);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < runs; ++i)
+            java(calls);
+        System.out.printf("%-22s %10.0f%n", "Java, compiled once",
+                (double)(System.nanoTime() - start) / runs / calls);
+    }
+
+    private static void report(String name, LoxEngine engine, Program program,
+                               int calls, int runs) {
+        LoxMap before = RegexNatives.regexStats();
+        long start = System.nanoTime();
+        for (int i = 0; i < runs; ++i)
+            run(engine, program);
+        double nanos = (double)(System.nanoTime() - start) / runs / calls;
+        LoxMap after = RegexNatives.regexStats();
+        System.out.printf("%-22s %10.0f %10.0f %10.0f%n", name, nanos,
+                ((double)after.get("hits") - (double)before.get("hits")) / runs,
+                ((double)after.get("misses") - (double)before.get("misses")) / runs);
+    }
+
+    private static int java(int calls) {
+        Pattern pattern = Pattern.compile("took (\\d+) ms");
+        int n = 0;
+        for (int i = 0; i < calls; ++i)
+            if (pattern.matcher(LINE).find())  n++;
+        return n;
+    }
+
+    private static void run(LoxEngine engine, Program program) {
+        PrintStream sink = new PrintStream(OutputStream.nullOutputStream());
+        LoxContext context = engine.newContext(sink, sink);
+        context.interpreter.globals.define("line", LINE);
+        if (!context.run(program))
+            throw new IllegalStateException("The benchmark script failed.");
+    }
+}
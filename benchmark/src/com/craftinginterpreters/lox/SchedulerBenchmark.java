@@ -0,0 +1,92 @@
+package com.craftinginterpreters.lox;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Future;
+
+/**
+ * Simulates a service where a few long computations share the carriers with a
+ * steady stream of short event handlers, and prints a histogram of the latency
+ * of the handlers (from submission to completion). It runs once with a short
+ * quantum and once with a quantum so long that every script runs to completion,
+ * where the handlers have to wait for the long computations.
+ *
+ * Usage: SchedulerBenchmark [carriers] [handlers]
+ */
+public class SchedulerBenchmark {
+    private static final String HOG =
+            "var total = 0;\n" +
+            "for (var i = 0; i < 3000000; i = i + 1) total = total + i;\n";
+    private static final String HANDLER =
+            "var total = 0;\n" +
+            "for (var i = 0; i < 500; i = i + 1) total = total + i;\n";
+    private static final int HOGS = 8;
+    private static final long[] BUCKETS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000};
+
+    public static void main(String[] args) throws Exception {
+        int carriers = args.length > 0 ? Integer.parseInt(args[0]) : 2;
+        int handlers = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+
+        LoxEngine engine = new LoxEngine();
+        Program hog = engine.compile(HOG);
+        Program handler = engine.compile(HANDLER);
+
+        simulate(engine, hog, handler, carriers, handlers / 5, Duration.ofMillis(1));  // Warm up
+        System.out.printf("%d carriers, %d long scripts, %d handlers%n", carriers, HOGS, handlers);
+        report("quantum 1 ms", simulate(engine, hog, handler, carriers, handlers, Duration.ofMillis(1)));
+        report("run to completion", simulate(engine, hog, handler, carriers, handlers, Duration.ofDays(1)));
+    }
+
+    // Returns the latency of every handler, in nanoseconds
+    private static long[] simulate(LoxEngine engine, Program hog, Program handler, int carriers,
+                                   int handlers, Duration quantum) throws Exception {
+        LoxScheduler scheduler = new LoxScheduler(carriers, quantum);
+        PrintStream sink = new PrintStream(OutputStream.nullOutputStream());
+
+        List<Future<Boolean>> hogs = new ArrayList<>();
+        for (int i = 0; i < HOGS; ++i)
+            hogs.add(scheduler.submit(engine.newContext(sink, sink), hog));
+
+        long[] latencies = new long[handlers];
+        List<Future<?>> results = new ArrayList<>();
+        for (int i = 0; i < handlers; ++i) {
+            int index = i;
+            long submitted = System.nanoTime();
+            results.add(scheduler.submit(engine.newContext(sink, sink), handler)
+                    .thenRun(() -> latencies[index] = System.nanoTime() - submitted));
+            Thread.sleep(1);
+        }
+
+        for (Future<?> result : results)
+            result.get();  // Makes `latencies` visible
+        for (Future<Boolean> result : hogs)
+            result.get();
+        return latencies;
+    }
+
+    private static void report(String name, long[] latencies) {
+        long[] sorted = latencies.clone();
+        Arrays.sort(sorted);
+        System.out.printf("%n%s: p50 %.1f ms, p99 %.1f ms, max %.1f ms%n", name,
+                sorted[sorted.length / 2] / 1e6, sorted[sorted.length * 99 / 100] / 1e6,
+                sorted[sorted.length - 1] / 1e6);
+
+        int[] counts = new int[BUCKETS.length + 1];
+        for (long latency : latencies) {
+            int bucket = 0;
+            while (bucket < BUCKETS.length && latency > BUCKETS[bucket] * 1_000_000)
+                bucket++;
+            counts[bucket]++;
+        }
+        for (int i = 0; i < counts.length; ++i) {
+            if (counts[i] == 0)  continue;
+            String label = i < BUCKETS.length ? "<= " + BUCKETS[i] + " ms" : "> " + BUCKETS[BUCKETS.length - 1] + " ms";
+            System.out.printf("%12s %6d %s%n", label, counts[i],
+                    "#".repeat((int)Math.ceil(50.0 * counts[i] / latencies.length)));
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.craftinginterpreters.lox;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Runs the pipeline "square the numbers below a bound, keep the odd squares'
+ * halves below a limit, sum them" and "find the first square above a limit" as
+ * a stream, as hand-written Lox that builds a list per stage, and as a single
+ * hand-fused Lox loop. Reports the time per run and the bytes allocated per
+ * element of the source.
+ *
+ * Usage: StreamBenchmark [elements] [runs]
+ */
+public class StreamBenchmark {
+    private static final String FUNCTIONS =
+            "fun square(x) { return x * x; }\n" +
+            "fun small(x) { return x < LIMIT; }\n" +
+            "fun add(a, b) { return a + b; }\n" +
+            "fun big(x) { return x > LIMIT; }\n";
+    private static final String STREAM = FUNCTIONS +
+            "var sum = stream(range(0, COUNT)).map(square).filter(small).reduce(0, add);\n" +
+            "var first = stream(range(0, COUNT)).map(square).find(big);\n";
+    private static final String STAGED = FUNCTIONS +
+            "var squares = list();\n" +
+            "for (var i = 0; i < COUNT; i = i + 1) squares.push(square(i));\n" +
+            "var kept = list();\n" +
+            "for (var i = 0; i < squares.length(); i = i + 1)\n" +
+            "  if (small(squares.get(i))) kept.push(squares.get(i));\n" +
+            "var sum = 0;\n" +
+            "for (var i = 0; i < kept.length(); i = i + 1) sum = add(sum, kept.get(i));\n" +
+            "var first = nil;\n" +
+            "for (var i = 0; i < squares.length() and first == nil; i = i + 1)\n" +
+            "  if (big(squares.get(i))) first = squares.get(i);\n";
+    private static final String FUSED = FUNCTIONS +
+            "var sum = 0;\n" +
+            "for (var i = 0; i < COUNT; i = i + 1) {\n" +
+            "  var x = square(i);\n" +
+            "  if (small(x)) sum = add(sum, x);\n" +
+            "}\n" +
+            "var first = nil;\n" +
+            "for (var i = 0; i < COUNT and first == nil; i = i + 1)\n" +
+            "  if (big(square(i))) first = square(i);\n";
+
+    public static void main(String[] args) {
+        int elements = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        LoxEngine engine = new LoxEngine();
+        String[] names = { "stream", "list per stage", "hand-fused loop" };
+        String[] sources = { STREAM, STAGED, FUSED };
+        Program[] programs = new Program[sources.length];
+        for (int i = 0; i < sources.length; ++i)
+            programs[i] = engine.compile(sources[i]
+                    .replace("COUNT", Integer.toString(elements))
+                    .replace("LIMIT", Long.toString((long)elements * elements / 4)));
+
+        PrintStream sink = new PrintStream(OutputStream.nullOutputStream());
+        LoxContext context = engine.newContext(sink, sink);
+        for (int i = 0; i < runs; ++i)  // Warm up
+            for (Program program : programs)
+                run(context, program);
+
+        System.out.printf("%d elements%n", elements);
+        System.out.printf("%-16s %10s %14s%n", "", "ms", "bytes/element");
+        for (int i = 0; i < programs.length; ++i)
+            report(names[i], context, programs[i], elements, runs);
+    }
+
+    private static void report(String name, LoxContext context, Program program,
+                               int elements, int runs) {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+        long allocated = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < runs; ++i)
+            run(context, program);
+        double millis = (System.nanoTime() - start) / 1e6 / runs;
+        double bytes = (double)(threads.getCurrentThreadAllocatedBytes() - allocated) / runs / elements;
+        System.out.printf("%-16s %10.1f %14.1f%n", name, millis, bytes);
+    }
+
+    private static void run(LoxContext context, Program program) {
+        if (!context.run(program))
+            throw new IllegalStateException("The benchmark script failed.");
+    }
+}
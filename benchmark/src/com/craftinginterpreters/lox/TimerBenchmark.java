@@ -0,0 +1,33 @@
+package com.craftinginterpreters.lox;
+
+/**
+ * Measures, from Lox, the resolution of `clock()` and `nanoClock()` (the
+ * smallest step either one is seen to take) and the floor of `bench`: its
+ * figures for a function that does nothing.
+ *
+ * Usage: TimerBenchmark [iterations]
+ */
+public class TimerBenchmark {
+    private static final String SCRIPT =
+            "fun resolution(timer) {\n" +
+            "  var smallest = 1000000000;\n" +
+            "  for (var i = 0; i < 1000; i = i + 1) {\n" +
+            "    var start = timer();\n" +
+            "    var now = timer();\n" +
+            "    while (now == start) now = timer();\n" +
+            "    if (now - start < smallest) smallest = now - start;\n" +
+            "  }\n" +
+            "  return smallest;\n" +
+            "}\n" +
+            "print \"clock() resolution:     \" + resolution(clock) * 1000000000 + \" ns\";\n" +
+            "print \"nanoClock() resolution: \" + resolution(nanoClock) + \" ns\";\n" +
+            "fun nothing() {}\n" +
+            "bench(nothing, ITERATIONS);\n";
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        LoxEngine engine = new LoxEngine();
+        if (!engine.newContext().run(SCRIPT.replace("ITERATIONS", Integer.toString(iterations))))
+            throw new IllegalStateException("The benchmark script failed.");
+    }
+}
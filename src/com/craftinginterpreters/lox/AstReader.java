@@ -0,0 +1,249 @@
+package com.craftinginterpreters.lox;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.craftinginterpreters.lox.AstWriter.*;
+
+/**
+ * Rebuilds a syntax tree written by `AstWriter`, scope distances included, so the
+ * result can be interpreted without running the scanner, the parser or the
+ * resolver again.
+ */
+class AstReader {
+    private static final TokenType[] tokenTypes = TokenType.values();
+
+    private final DataInputStream in;
+    private final GlobalEnvironment.Slots slots;  // Of the globals, like `Resolver`
+    private final List<String> strings = new ArrayList<>();
+
+    AstReader(DataInputStream in, GlobalEnvironment.Slots slots) {
+        this.in = in;
+        this.slots = slots;
+    }
+
+    List<Stmt> readStatements() throws IOException {
+        return readList();
+    }
+
+
+    // Statements
+
+    Stmt readStmt() throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case BLOCK:
+                return new Stmt.Block(readList());
+            case CLASS: {
+                Token name = readToken();
+                Expr.Variable superclass = (Expr.Variable)readExpr();
+                List<Stmt.Function> nonstaticMethods = readFunctions();
+                List<Stmt.Function> staticMethods = readFunctions();
+                return new Stmt.Class(name, superclass, nonstaticMethods, staticMethods);
+            }
+            case EXPRESSION:
+                return new Stmt.Expression(readExpr());
+            case FOR_IN: {
+                Token keyword = readToken();
+                Token name = readToken();
+                Expr iterable = readExpr();
+                return new Stmt.ForIn(keyword, name, iterable, readStmt());
+            }
+            case FUNCTION:
+                return readFunctionBody();
+            case IF: {
+                Expr condition = readExpr();
+                Stmt thenBranch = readStmt();
+                Stmt elseBranch = readStmt();
+                return new Stmt.If(condition, thenBranch, elseBranch);
+            }
+            case PRINT:
+                return new Stmt.Print(readExpr());
+            case RETURN: {
+                Token keyword = readToken();
+                return new Stmt.Return(keyword, readExpr());
+            }
+            case VAR: {
+                Token name = readToken();
+                return new Stmt.Var(name, readExpr());
+            }
+            case WHILE: {
+                Token keyword = readToken();
+                Expr condition = readExpr();
+                return new Stmt.While(keyword, condition, readStmt());
+            }
+        }
+        throw new IOException("Unknown statement tag " + tag + ".");
+    }
+
+    // Called once the FUNCTION tag has been consumed
+    private Stmt.Function readFunctionBody() throws IOException {
+        Token name = readToken();
+        List<Token> params = readTokens();
+        List<Stmt> body = readList();
+        Stmt.Function function = new Stmt.Function(name, params, body);
+        function.pure = readLiteral() == Boolean.TRUE;
+        return function;
+    }
+
+
+    // Expressions
+
+    Expr readExpr() throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case ASSIGN: {
+                Token name = readToken();
+                Expr.Assign assign = new Expr.Assign(name, readExpr());
+                assign.depth = readDepth();
+                if (assign.depth < 0)
+                    assign.slot = slots.slot(name.lexeme);
+                return assign;
+            }
+            case BINARY: {
+                Expr left = readExpr();
+                Token operator = readToken();
+                return new Expr.Binary(left, operator, readExpr());
+            }
+            case CALL: {
+                Expr callee = readExpr();
+                Token paren = readToken();
+                int count = readVarInt();
+                List<Expr> arguments = new ArrayList<>(count);
+                for (int i = 0; i < count; ++i)
+                    arguments.add(readExpr());
+                return new Expr.Call(callee, paren, arguments);
+            }
+            case GET: {
+                Expr object = readExpr();
+                return new Expr.Get(object, readToken());
+            }
+            case GROUPING:
+                return new Expr.Grouping(readExpr());
+            case LAMBDA: {
+                Token keyword = readToken();
+                List<Token> params = readTokens();
+                return new Expr.Lambda(keyword, params, readList());
+            }
+            case LITERAL:
+                return new Expr.Literal(readLiteral());
+            case LOGICAL: {
+                Expr left = readExpr();
+                Token operator = readToken();
+                return new Expr.Logical(left, operator, readExpr());
+            }
+            case SET: {
+                Expr object = readExpr();
+                Token name = readToken();
+                return new Expr.Set(object, name, readExpr());
+            }
+            case SUPER: {
+                Token keyword = readToken();
+                Expr.Super superExpr = new Expr.Super(keyword, readToken());
+                superExpr.depth = readDepth();
+                return superExpr;
+            }
+            case THIS: {
+                Expr.This thisExpr = new Expr.This(readToken());
+                thisExpr.depth = readDepth();
+                return thisExpr;
+            }
+            case UNARY: {
+                Token operator = readToken();
+                return new Expr.Unary(operator, readExpr());
+            }
+            case VARIABLE: {
+                Expr.Variable variable = new Expr.Variable(readToken());
+                variable.depth = readDepth();
+                if (variable.depth < 0)
+                    variable.slot = slots.slot(variable.name.lexeme);
+                return variable;
+            }
+        }
+        throw new IOException("Unknown expression tag " + tag + ".");
+    }
+
+    // Mirror of `AstWriter.writeDepth`
+    private int readDepth() throws IOException {
+        return readVarInt() - 1;
+    }
+
+
+    // Utils
+
+    private List<Stmt> readList() throws IOException {
+        int count = readVarInt();
+        List<Stmt> statements = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i)
+            statements.add(readStmt());
+        return statements;
+    }
+
+    private List<Stmt.Function> readFunctions() throws IOException {
+        int count = readVarInt();
+        List<Stmt.Function> functions = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            if (in.readByte() != FUNCTION)
+                throw new IOException("Expect a method.");
+            functions.add(readFunctionBody());
+        }
+        return functions;
+    }
+
+    private List<Token> readTokens() throws IOException {
+        int count = readVarInt();
+        List<Token> tokens = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i)
+            tokens.add(readToken());
+        return tokens;
+    }
+
+    private Token readToken() throws IOException {
+        TokenType type = tokenTypes[readVarInt()];
+        String lexeme = readString();
+        Object literal = readLiteral();
+        int line = readVarInt();
+        return new Token(type, lexeme, literal, line);
+    }
+
+    private Object readLiteral() throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case NIL:  return null;
+            case TRUE:  return true;
+            case FALSE:  return false;
+            case NUMBER:  return in.readDouble();
+            case STRING:  return readString();
+        }
+        throw new IOException("Unknown literal tag " + tag + ".");
+    }
+
+    private String readString() throws IOException {
+        int index = readVarInt();
+        if (index > 0)
+            return strings.get(index - 1);
+
+        byte[] bytes = new byte[readVarInt()];
+        in.readFully(bytes);
+        String string = new String(bytes, StandardCharsets.UTF_8);
+        strings.add(string);
+        return string;
+    }
+
+    private int readVarInt() throws IOException {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+    }
+}
@@ -0,0 +1,365 @@
+package com.craftinginterpreters.lox;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes a resolved syntax tree in the compact binary form read back by `AstReader`.
+ * Every node starts with a one-byte tag, lexemes go through a string table so that
+ * repeated identifiers are written only once, and the resolver's scope distance is
+ * stored along with every expression that it resolves.
+ */
+class AstWriter implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+    // Node tags
+    static final byte NULL = 0;
+    static final byte ASSIGN = 1, BINARY = 2, CALL = 3, GET = 4, GROUPING = 5,
+            LAMBDA = 6, LITERAL = 7, LOGICAL = 8, SET = 9, SUPER = 10, THIS = 11,
+            UNARY = 12, VARIABLE = 13;
+    static final byte BLOCK = 32, CLASS = 33, EXPRESSION = 34, FUNCTION = 35,
+            IF = 36, PRINT = 37, RETURN = 38, VAR = 39, WHILE = 40, FOR_IN = 41;
+
+    // Literal tags
+    static final byte NIL = 0, TRUE = 1, FALSE = 2, NUMBER = 3, STRING = 4;
+
+    private final DataOutputStream out;
+    private final Map<String, Integer> strings = new HashMap<>();
+
+    AstWriter(DataOutputStream out) {
+        this.out = out;
+    }
+
+    void writeStatements(List<Stmt> statements) throws IOException {
+        try {
+            writeVarInt(statements.size());
+            for (Stmt statement : statements)
+                write(statement);
+        } catch (UncheckedIOException error) {
+            throw error.getCause();  // The visitor methods can't throw checked exceptions
+        }
+    }
+
+    // Single nodes for callers that embed trees in their own format, like `HeapSnapshot`
+
+    void writeStatement(Stmt stmt) throws IOException {
+        try {
+            write(stmt);
+        } catch (UncheckedIOException error) {
+            throw error.getCause();
+        }
+    }
+
+    void writeExpression(Expr expr) throws IOException {
+        try {
+            write(expr);
+        } catch (UncheckedIOException error) {
+            throw error.getCause();
+        }
+    }
+
+
+    // Statements
+
+    @Override
+    public Void visitBlockStmt(Stmt.Block stmt) {
+        tag(BLOCK);
+        writeList(stmt.statements);
+        return null;
+    }
+
+    @Override
+    public Void visitClassStmt(Stmt.Class stmt) {
+        tag(CLASS);
+        writeToken(stmt.name);
+        write(stmt.superclass);
+        writeFunctions(stmt.nonstaticMethods);
+        writeFunctions(stmt.staticMethods);
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionStmt(Stmt.Expression stmt) {
+        tag(EXPRESSION);
+        write(stmt.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitForInStmt(Stmt.ForIn stmt) {
+        tag(FOR_IN);
+        writeToken(stmt.keyword);
+        writeToken(stmt.name);
+        write(stmt.iterable);
+        write(stmt.body);
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionStmt(Stmt.Function stmt) {
+        tag(FUNCTION);
+        writeToken(stmt.name);
+        writeTokens(stmt.params);
+        writeList(stmt.body);
+        writeLiteral(stmt.pure);  // Inferred by the resolver
+        return null;
+    }
+
+    @Override
+    public Void visitIfStmt(Stmt.If stmt) {
+        tag(IF);
+        write(stmt.condition);
+        write(stmt.thenBranch);
+        write(stmt.elseBranch);
+        return null;
+    }
+
+    @Override
+    public Void visitPrintStmt(Stmt.Print stmt) {
+        tag(PRINT);
+        write(stmt.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt(Stmt.Return stmt) {
+        tag(RETURN);
+        writeToken(stmt.keyword);
+        write(stmt.value);
+        return null;
+    }
+
+    @Override
+    public Void visitVarStmt(Stmt.Var stmt) {
+        tag(VAR);
+        writeToken(stmt.name);
+        write(stmt.initializer);
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(Stmt.While stmt) {
+        tag(WHILE);
+        writeToken(stmt.keyword);
+        write(stmt.condition);
+        write(stmt.body);
+        return null;
+    }
+
+
+    // Expressions
+
+    @Override
+    public Void visitAssignExpr(Expr.Assign expr) {
+        tag(ASSIGN);
+        writeToken(expr.name);
+        write(expr.value);
+        writeDepth(expr.depth);
+        return null;
+    }
+
+    @Override
+    public Void visitBinaryExpr(Expr.Binary expr) {
+        tag(BINARY);
+        write(expr.left);
+        writeToken(expr.operator);
+        write(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitCallExpr(Expr.Call expr) {
+        tag(CALL);
+        write(expr.callee);
+        writeToken(expr.paren);
+        writeVarInt(expr.arguments.size());
+        for (Expr argument : expr.arguments)
+            write(argument);
+        return null;
+    }
+
+    @Override
+    public Void visitGetExpr(Expr.Get expr) {
+        tag(GET);
+        write(expr.object);
+        writeToken(expr.name);
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingExpr(Expr.Grouping expr) {
+        tag(GROUPING);
+        write(expr.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitLambdaExpr(Expr.Lambda expr) {
+        tag(LAMBDA);
+        writeToken(expr.keyword);
+        writeTokens(expr.params);
+        writeList(expr.body);
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpr(Expr.Literal expr) {
+        tag(LITERAL);
+        writeLiteral(expr.value);
+        return null;
+    }
+
+    @Override
+    public Void visitLogicalExpr(Expr.Logical expr) {
+        tag(LOGICAL);
+        write(expr.left);
+        writeToken(expr.operator);
+        write(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitSetExpr(Expr.Set expr) {
+        tag(SET);
+        write(expr.object);
+        writeToken(expr.name);
+        write(expr.value);
+        return null;
+    }
+
+    @Override
+    public Void visitSuperExpr(Expr.Super expr) {
+        tag(SUPER);
+        writeToken(expr.keyword);
+        writeToken(expr.method);
+        writeDepth(expr.depth);
+        return null;
+    }
+
+    @Override
+    public Void visitThisExpr(Expr.This expr) {
+        tag(THIS);
+        writeToken(expr.keyword);
+        writeDepth(expr.depth);
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(Expr.Unary expr) {
+        tag(UNARY);
+        writeToken(expr.operator);
+        write(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitVariableExpr(Expr.Variable expr) {
+        tag(VARIABLE);
+        writeToken(expr.name);
+        writeDepth(expr.depth);
+        return null;
+    }
+
+
+    // Utils
+
+    private void write(Stmt stmt) {
+        if (stmt == null)  tag(NULL);
+        else  stmt.accept(this);
+    }
+
+    private void write(Expr expr) {
+        if (expr == null)  tag(NULL);
+        else  expr.accept(this);
+    }
+
+    private void writeList(List<Stmt> statements) {
+        writeVarInt(statements.size());
+        for (Stmt statement : statements)
+            write(statement);
+    }
+
+    private void writeFunctions(List<Stmt.Function> functions) {
+        writeVarInt(functions.size());
+        for (Stmt.Function function : functions)
+            write(function);
+    }
+
+    private void writeTokens(List<Token> tokens) {
+        writeVarInt(tokens.size());
+        for (Token token : tokens)
+            writeToken(token);
+    }
+
+    private void writeToken(Token token) {
+        writeVarInt(token.type.ordinal());
+        writeString(token.lexeme);
+        writeLiteral(token.literal);
+        writeVarInt(token.line);
+    }
+
+    // Globals (-1) are written as 0, so that the depth fits an unsigned varint
+    private void writeDepth(int depth) {
+        writeVarInt(depth + 1);
+    }
+
+    private void writeLiteral(Object value) {
+        try {
+            if (value == null) {
+                out.writeByte(NIL);
+            } else if (value instanceof Boolean) {
+                out.writeByte((boolean)value ? TRUE : FALSE);
+            } else if (value instanceof Double) {
+                out.writeByte(NUMBER);
+                out.writeDouble((double)value);
+            } else {
+                out.writeByte(STRING);
+                writeString((String)value);
+            }
+        } catch (IOException error) {
+            throw new UncheckedIOException(error);
+        }
+    }
+
+    // The first occurrence of a string is written inline, later ones refer back to it
+    private void writeString(String string) {
+        Integer index = strings.get(string);
+        if (index != null) {
+            writeVarInt(index + 1);
+            return;
+        }
+
+        strings.put(string, strings.size());
+        writeVarInt(0);
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(bytes.length);
+        try {
+            out.write(bytes);
+        } catch (IOException error) {
+            throw new UncheckedIOException(error);
+        }
+    }
+
+    private void tag(byte tag) {
+        try {
+            out.writeByte(tag);
+        } catch (IOException error) {
+            throw new UncheckedIOException(error);
+        }
+    }
+
+    private void writeVarInt(int value) {
+        try {
+            while ((value & ~0x7F) != 0) {
+                out.writeByte((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.writeByte(value);
+        } catch (IOException error) {
+            throw new UncheckedIOException(error);
+        }
+    }
+}
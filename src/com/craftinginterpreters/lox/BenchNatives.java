@@ -0,0 +1,99 @@
+package com.craftinginterpreters.lox;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * `bench(fn, iterations)`, a harness for timing Lox code from Lox. It calls
+ * `fn` (which takes no arguments) half as many times as asked to warm up, then
+ * `iterations` times timing each call with `System.nanoTime`, and prints one
+ * line to the script's output:
+ *
+ *     bench <fn f>: n=1000 mean=1523ns p50=1400ns p90=1800ns p99=4100ns max=9000ns alloc=312B/op
+ *
+ * Times are whole nanoseconds, so the format doesn't change with their scale.
+ * `alloc` is the bytes the calling thread allocated per call, from the JVM's
+ * `ThreadMXBean`, and is left out where the JVM can't tell (e.g. on virtual
+ * threads). The same figures are returned in a map. Each call takes a step
+ * from the budget, so a run can be stopped in the middle of a benchmark.
+ */
+class BenchNatives {
+    private static final double[] PERCENTILES = { 0.5, 0.9, 0.99 };
+    // Every time is kept, in an array
+    private static final int MAX_ITERATIONS = Integer.MAX_VALUE - 8;
+
+    @LoxNative
+    static LoxMap bench(Interpreter interpreter, Object fn, long count) {
+        LoxCallable function = LoxNativeObject.function(fn, 0);
+        if (count < 1)
+            throw new NativeError("Expect at least 1 iteration.");
+        if (count > MAX_ITERATIONS)
+            throw new NativeError("Expect at most " + MAX_ITERATIONS + " iterations.");
+        int iterations = (int)count;
+
+        long[] samples;
+        try {
+            samples = new long[iterations];
+        } catch (OutOfMemoryError error) {
+            throw new NativeError("Not enough memory to time " + iterations + " iterations.");
+        }
+
+        Token token = interpreter.callSite;
+        for (int i = 0; i < Math.max(1, iterations / 2); ++i) {
+            interpreter.step(token);
+            function.call(interpreter, List.of());
+        }
+
+        long allocatedBefore = allocatedBytes();
+        for (int i = 0; i < iterations; ++i) {
+            interpreter.step(token);  // Outside the timing, like the loop itself
+            long start = System.nanoTime();
+            function.call(interpreter, List.of());
+            samples[i] = System.nanoTime() - start;
+        }
+        long allocatedAfter = allocatedBytes();
+
+        LoxMap results = new LoxMap();
+        StringBuilder report = new StringBuilder("bench ")
+                .append(Interpreter.stringify(fn)).append(": n=").append(iterations);
+        results.put("n", (double)iterations);
+
+        double mean = (double)Arrays.stream(samples).sum() / iterations;
+        report.append(" mean=").append(Math.round(mean)).append("ns");
+        results.put("mean", mean);
+
+        Arrays.sort(samples);
+        for (double percentile : PERCENTILES) {
+            String name = "p" + Math.round(percentile * 100);
+            long sample = samples[(int)Math.ceil(percentile * iterations) - 1];
+            report.append(' ').append(name).append('=').append(sample).append("ns");
+            results.put(name, (double)sample);
+        }
+        report.append(" max=").append(samples[iterations - 1]).append("ns");
+        results.put("max", (double)samples[iterations - 1]);
+
+        if (allocatedBefore >= 0 && allocatedAfter >= 0) {
+            long perCall = Math.round((double)(allocatedAfter - allocatedBefore) / iterations);
+            report.append(" alloc=").append(perCall).append("B/op");
+            results.put("alloc", (double)perCall);
+        }
+
+        interpreter.out.println(report);
+        return results;
+    }
+
+    // The bytes allocated by the current thread so far, or -1 if unknown
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean))
+            return -1;
+
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean)threads;
+        if (!allocations.isThreadAllocatedMemorySupported() ||
+                !allocations.isThreadAllocatedMemoryEnabled())
+            return -1;
+        return allocations.getCurrentThreadAllocatedBytes();
+    }
+}
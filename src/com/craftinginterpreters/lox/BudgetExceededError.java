@@ -0,0 +1,10 @@
+package com.craftinginterpreters.lox;
+
+// Thrown when a run goes over its `ExecutionBudget`
+class BudgetExceededError extends RuntimeError {
+    private static final long serialVersionUID = 1L;
+
+    BudgetExceededError(Token token, String message) {
+        super(token, message);
+    }
+}
@@ -0,0 +1,87 @@
+package com.craftinginterpreters.lox;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A buffered output stream that also flushes itself when idle, for the output
+ * of scripts run as a stage of a pipeline. Writes only go out once the buffer
+ * is full, so a script printing many lines doesn't make a system call for each
+ * of them, but a daemon thread checks every `interval` milliseconds and
+ * flushes what is buffered once nothing was written for a whole interval, or
+ * at the latest after 10 of them. A script blocking on its input gets it
+ * flushed right away by `LineReader`.
+ */
+class BufferedSink extends OutputStream {
+    private static final int MAX_WAIT = 10;  // Intervals
+
+    private final OutputStream out;
+    private final byte[] buffer;
+    private int count = 0;
+    private boolean written = false;  // Since the flusher last looked
+    private int waited = 0;  // Intervals the buffered bytes have waited for
+
+    BufferedSink(OutputStream out, int size, long interval) {
+        this.out = out;
+        this.buffer = new byte[size];
+
+        Thread flusher = new Thread(() -> flushWhenIdle(interval), "lox-output-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    @Override
+    public synchronized void write(int b) throws IOException {
+        if (count == buffer.length)
+            drain();
+        buffer[count++] = (byte)b;
+        written = true;
+    }
+
+    @Override
+    public synchronized void write(byte[] bytes, int offset, int length) throws IOException {
+        if (count + length > buffer.length)
+            drain();
+        if (length >= buffer.length) {
+            out.write(bytes, offset, length);
+        } else {
+            System.arraycopy(bytes, offset, buffer, count, length);
+            count += length;
+        }
+        written = true;
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        drain();
+        out.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        flush();
+        out.close();
+    }
+
+    private void drain() throws IOException {
+        if (count > 0)
+            out.write(buffer, 0, count);
+        count = 0;
+        waited = 0;
+    }
+
+    private void flushWhenIdle(long interval) {
+        try {
+            while (true) {
+                Thread.sleep(interval);
+                synchronized (this) {
+                    if (count > 0 && (!written || ++waited >= MAX_WAIT))
+                        flush();
+                    written = false;
+                }
+            }
+        } catch (InterruptedException | IOException error) {
+            // The output is gone, or the program is ending
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.craftinginterpreters.lox;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * The characters of a text read one at a time, with one of lookahead, through
+ * a buffer of its own, for the parsers of `JsonReader` and `CsvReader`. Keeps
+ * track of the line, for their error messages. A source over a file holds it
+ * open until `close`, which it calls itself once the text has been read.
+ */
+class CharSource {
+    static final int END = -1;
+    private static final int BUFFER_SIZE = 1 << 14;
+
+    private final Reader reader;
+    final char[] buffer;
+    int position = 0, limit = 0;  // Parsers may scan `buffer` themselves
+    int line = 1;
+    private boolean closed = false;
+
+    CharSource(Reader reader) {
+        this.reader = reader;
+        this.buffer = new char[BUFFER_SIZE];
+    }
+
+    int peek() {
+        if (position == limit && !fill())  return END;
+        return buffer[position];
+    }
+
+    int read() {
+        if (position == limit && !fill())  return END;
+        char c = buffer[position++];
+        if (c == '\n')  line++;
+        return c;
+    }
+
+    // Returns `false` at the end of the text
+    boolean fill() {
+        if (closed)  return false;
+        try {
+            int count = reader.read(buffer, 0, buffer.length);
+            if (count <= 0) {
+                close();
+                return false;
+            }
+            position = 0;
+            limit = count;
+            return true;
+        } catch (IOException error) {
+            close();
+            throw new NativeError("Can't read: " + error.getMessage());
+        }
+    }
+
+    void close() {
+        closed = true;
+        position = limit = 0;
+        try {
+            reader.close();
+        } catch (IOException error) {
+            // Nothing is lost, the text was only read
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.craftinginterpreters.lox;
+
+import java.nio.file.Paths;
+
+// The natives every interpreter has, besides those of `ParallelNatives`, `BenchNatives`,
+// `RegexNatives` and `DataNatives`
+class CoreNatives {
+    @LoxNative
+    static double clock() {
+        return (double)System.currentTimeMillis() / 1000.0;
+    }
+
+    // Nanoseconds since an arbitrary origin, for measuring elapsed time only
+    @LoxNative
+    static double nanoClock() {
+        return (double)System.nanoTime();
+    }
+
+    @LoxNative
+    static LoxList list(Interpreter interpreter) {
+        interpreter.allocate();
+        return new LoxList();
+    }
+
+    @LoxNative
+    static LoxMap map(Interpreter interpreter) {
+        interpreter.allocate();
+        return new LoxMap();
+    }
+
+
+    // Charged to the budget as an allocation per element
+    @LoxNative("Float64Array")
+    static LoxFloat64Array float64Array(Interpreter interpreter, double length) {
+        if (length < 0 || length != Math.floor(length))
+            throw new NativeError("Array length must be a non-negative integer.");
+        if (length > LoxFloat64Array.MAX_LENGTH)
+            throw new NativeError("Array length must be at most " + LoxFloat64Array.MAX_LENGTH + ".");
+        interpreter.allocate((long)length);
+        return new LoxFloat64Array((long)length);
+    }
+
+    // Memoization
+
+    @LoxNative
+    static MemoizedFunction memoize(Object function) {
+        if (!(function instanceof LoxCallable))
+            throw new NativeError("Can only memoize functions.");
+        return new MemoizedFunction((LoxCallable)function);
+    }
+
+    // The cache statistics of a memoized function, `nil` for others
+    @LoxNative
+    static LoxMap memoStats(Object function) {
+        if (function instanceof MemoizedFunction)
+            return ((MemoizedFunction)function).stats();
+        if (function instanceof LoxFunction && ((LoxFunction)function).declaration.pure)
+            return ((LoxFunction)function).memoized().stats();
+        return null;
+    }
+
+    // Sequences
+
+    @LoxNative
+    static LoxRange range(double start, double end) {
+        return new LoxRange(start, end);
+    }
+
+    @LoxNative
+    static LoxIterator lines(Interpreter interpreter, String path) {
+        return new LineIterator(Paths.get(path), interpreter);
+    }
+
+    @LoxNative
+    static LoxMappedFile mapFile(String path) {
+        return new LoxMappedFile(Paths.get(path));
+    }
+
+
+    @LoxNative
+    static LoxStream stream(Object sequence) {
+        if (!(sequence instanceof LoxIterable) && !(sequence instanceof LoxIterator) &&
+                !(sequence instanceof LoxInstance))
+            throw new NativeError("Can only stream lists, ranges and iterators.");
+        return new LoxStream(sequence);
+    }
+
+
+    // Concurrency
+
+    @LoxNative
+    static LoxTask spawn(Interpreter interpreter, Object function) {
+        if (!(function instanceof LoxCallable) || ((LoxCallable)function).arity() != 0)
+            throw new NativeError("Can only spawn functions that take no arguments.");
+        return LoxTask.spawn((LoxCallable)function, interpreter);
+    }
+
+    @LoxNative
+    static Object join(Interpreter interpreter, Object task) {
+        if (!(task instanceof LoxTask))
+            throw new NativeError("Can only join tasks.");
+        return ((LoxTask)task).join(interpreter);
+    }
+
+    @LoxNative
+    static LoxChannel channel(Object capacity) {
+        if (!(capacity instanceof Double) || (double)capacity < 0 ||
+                (double)capacity != Math.floor((double)capacity))
+            throw new NativeError("Channel capacity must be a non-negative integer.");
+        if ((double)capacity > Integer.MAX_VALUE)
+            throw new NativeError("Channel capacity must be at most " + Integer.MAX_VALUE + ".");
+        return new LoxChannel((int)(double)capacity);
+    }
+}
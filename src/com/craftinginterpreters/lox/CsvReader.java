@@ -0,0 +1,94 @@
+package com.craftinginterpreters.lox;
+
+/**
+ * The rows of a CSV text, as lists of strings, read one at a time:
+ * `csvRows(path)` goes over those of a file of any size, and `parseCsv(text)`
+ * returns all of them in a list. Fields are separated by commas and rows by
+ * line breaks; a field in double quotes may contain both, and `""` for a quote.
+ * Fields are not converted, `parseNumber(text)` does that for numbers.
+ *
+ * The interpreter that created the reader is charged an allocation for each
+ * row, and for each field and its place in the row.
+ */
+class CsvReader implements LoxIterator {
+    private final CharSource in;
+    private final Interpreter interpreter;
+    private final StringBuilder field = new StringBuilder();  // Reused for each field
+
+    CsvReader(CharSource in, Interpreter interpreter) {
+        this.in = in;
+        this.interpreter = interpreter;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return in.peek() != CharSource.END;
+    }
+
+    @Override
+    public Object next() {
+        if (!hasNext())
+            throw new NativeError("No more rows in the CSV.");
+
+        interpreter.allocate();
+        LoxList row = new LoxList();
+        while (true) {
+            row.add(readField());
+            interpreter.allocate();
+            int c = in.read();
+            if (c == ',')  continue;
+            if (c == '\r' && in.peek() == '\n')
+                in.read();
+            return row;
+        }
+    }
+
+    // Stops before the comma or line break that ends it
+    private String readField() {
+        interpreter.allocate();
+        if (in.peek() != '"') {
+            // Unquoted fields are usually within the buffer
+            int start = in.position;
+            for (int i = start; i < in.limit; ++i) {
+                char c = in.buffer[i];
+                if (c == ',' || c == '\n' || c == '\r') {
+                    in.position = i;
+                    return new String(in.buffer, start, i - start);
+                }
+            }
+
+            field.setLength(0);
+            for (int c = in.peek(); c != ',' && c != '\n' && c != '\r' && c != CharSource.END;
+                 c = in.peek())
+                field.append((char)in.read());
+            return field.toString();
+        }
+
+        in.read();
+        field.setLength(0);
+        while (true) {
+            int c = in.read();
+            if (c == CharSource.END)
+                throw new NativeError("Unterminated quoted field in CSV at line " + in.line + ".");
+            if (c == '"') {
+                if (in.peek() != '"')  break;
+                in.read();
+            }
+            field.append((char)c);
+        }
+        int c = in.peek();
+        if (c != ',' && c != '\n' && c != '\r' && c != CharSource.END)
+            throw new NativeError("Expect ',' after quoted field in CSV at line " + in.line + ".");
+        return field.toString();
+    }
+
+    @Override
+    public void close() {
+        in.close();
+    }
+
+    @Override
+    public String toString() {
+        return "<csv rows>";
+    }
+}
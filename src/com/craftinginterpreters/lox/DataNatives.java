@@ -0,0 +1,62 @@
+package com.craftinginterpreters.lox;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.regex.Pattern;
+
+// Parsers of structured data into Lox values, see `JsonReader` and `CsvReader`
+class DataNatives {
+    private static final Pattern NUMBER = Pattern.compile("-?\\d+(\\.\\d+)?([eE][+-]?\\d+)?");
+
+    @LoxNative
+    static Object parseJson(Interpreter interpreter, String text) {
+        return new JsonReader(new CharSource(new StringReader(text)), interpreter).readDocument();
+    }
+
+    @LoxNative
+    static Object readJson(Interpreter interpreter, String path) {
+        return new JsonReader(open(path), interpreter).readDocument();
+    }
+
+    @LoxNative
+    static JsonReader jsonEvents(Interpreter interpreter, String path) {
+        return new JsonReader(open(path), interpreter);
+    }
+
+    @LoxNative
+    static LoxList parseCsv(Interpreter interpreter, String text) {
+        CsvReader rows = new CsvReader(new CharSource(new StringReader(text)), interpreter);
+        interpreter.allocate();
+        LoxList list = new LoxList();
+        while (rows.hasNext()) {
+            list.add(rows.next());
+            interpreter.allocate();
+        }
+        return list;
+    }
+
+    @LoxNative
+    static CsvReader csvRows(Interpreter interpreter, String path) {
+        return new CsvReader(open(path), interpreter);
+    }
+
+    // The number written in `text`, `nil` if it isn't one
+    @LoxNative
+    static Object parseNumber(String text) {
+        String trimmed = text.trim();
+        return NUMBER.matcher(trimmed).matches() ? (Object)Double.parseDouble(trimmed) : null;
+    }
+
+    private static CharSource open(String path) {
+        try {
+            return new CharSource(new InputStreamReader(
+                    Files.newInputStream(Paths.get(path)), StandardCharsets.UTF_8));
+        } catch (IOException error) {
+            throw new NativeError("Can't read file '" + path + "'.");
+        }
+    }
+}
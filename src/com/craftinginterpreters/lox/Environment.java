@@ -2,16 +2,55 @@ package com.craftinginterpreters.lox;
 
 import java.util.HashMap;
 import java.util.Map;
-
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Memory model: most environments are only ever used by the thread that created
+ * them, so the bindings live in a plain `HashMap`. Closures let tasks started by
+ * `spawn`, and the workers of the parallel natives, share environments, so
+ * `shareCaptured` moves the bindings of every environment a function captured
+ * to a `ConcurrentHashMap` before another thread runs it. From then on, each
+ * read sees the latest completed write of that variable (reads never lock), and
+ * each `define`/`assign` is atomic on its own. Sequences of them are not:
+ * `count = count + 1` from two tasks can lose an update, exactly like in Java,
+ * so tasks should coordinate via channels. The globals are always shared, see
+ * `GlobalEnvironment`.
+ */
 class Environment {
+    // Stored for `nil`, so that a single lookup tells it from a missing binding
+    private static final Object NIL = new Object();
+
     final Environment enclosing;  // Parent scope
-    private final Map<String, Object> values = new HashMap<>();
+    private Map<String, Object> values = new HashMap<>();
+    private boolean shared = false;
 
     Environment() { enclosing = null; }
 
     Environment(Environment enclosing) { this.enclosing = enclosing; }
 
 
+    // Makes the environments `function` captured safe to use from other threads
+    static void shareCaptured(Object function) {
+        if (function instanceof LoxFunction)
+            ((LoxFunction)function).closure.share();
+        else if (function instanceof LoxLambda)
+            ((LoxLambda)function).closure.share();
+        else if (function instanceof MemoizedFunction)
+            shareCaptured(((MemoizedFunction)function).function);
+        else if (function instanceof LoxClass)
+            for (LoxFunction method : ((LoxClass)function).methods.values())
+                shareCaptured(method);
+    }
+
+    // Done by the thread that owns this environment, before it starts the others
+    void share() {
+        if (shared)  return;
+        values = new ConcurrentHashMap<>(values);
+        shared = true;
+        if (enclosing != null)
+            enclosing.share();
+    }
+
     Environment ancestor(int distance) {
         Environment environment = this;
         for (int i = 0; i < distance; ++i)
@@ -23,14 +62,15 @@ class Environment {
     // Define
 
     void define(String name, Object value) {
-        values.put(name, value);
+        values.put(name, value == null ? NIL : value);
     }
 
     // Get
 
     Object get(Token name) {
-        if (values.containsKey(name.lexeme))
-            return values.get(name.lexeme);
+        Object value = values.get(name.lexeme);
+        if (value != null)
+            return value == NIL ? null : value;
 
         if (enclosing != null)
             return enclosing.get(name);
@@ -39,16 +79,21 @@ class Environment {
     }
 
     Object getAt(int distance, String name) {
-        return ancestor(distance).values.get(name);
+        return ancestor(distance).lookup(name);
+    }
+
+    // The binding of `name` in this scope alone
+    Object lookup(String name) {
+        Object value = values.get(name);
+        return value == NIL ? null : value;
     }
 
     // Assign
 
     void assign(Token name, Object value) {
-        if (values.containsKey(name.lexeme)) {
-            values.put(name.lexeme, value);
+        // Only replaces an existing binding, atomically
+        if (values.replace(name.lexeme, value == null ? NIL : value) != null)
             return;
-        }
 
         if (enclosing != null) {
             enclosing.assign(name, value);
@@ -58,7 +103,34 @@ class Environment {
     }
 
     void assignAt(int distance, Token name, Object value) {
-        ancestor(distance).values.put(name.lexeme, value);
+        ancestor(distance).define(name.lexeme, value);
+    }
+
+    // A copy of the bindings in this scope alone, with `nil` as `null`
+    Map<String, Object> bindings() {
+        Map<String, Object> bindings = new HashMap<>();
+        for (Map.Entry<String, Object> binding : values.entrySet())
+            bindings.put(binding.getKey(), binding.getValue() == NIL ? null : binding.getValue());
+        return bindings;
+    }
+
+    // Replaces the bindings in this scope with a copy made by `bindings`, if they changed
+    void restore(Map<String, Object> bindings) {
+        if (values.size() == bindings.size() && same(values, bindings, NIL))
+            return;
+        values.clear();
+        for (Map.Entry<String, Object> binding : bindings.entrySet())
+            define(binding.getKey(), binding.getValue());
+    }
+
+    // Whether `stored`, where `nil` is `marker`, holds the same objects as `copy`
+    static boolean same(Map<String, Object> stored, Map<String, Object> copy, Object marker) {
+        for (Map.Entry<String, Object> entry : copy.entrySet()) {
+            Object value = entry.getValue();
+            if (stored.get(entry.getKey()) != (value == null ? marker : value))
+                return false;
+        }
+        return true;
     }
 
-}
\ No newline at end of file
+}
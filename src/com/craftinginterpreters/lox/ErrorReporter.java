@@ -0,0 +1,58 @@
+package com.craftinginterpreters.lox;
+
+import java.io.PrintStream;
+
+/**
+ * Collects the errors of one context. Every stage of a context reports to the
+ * same reporter, so contexts running side by side never see each other's errors.
+ */
+class ErrorReporter {
+    PrintStream err;
+    boolean hadError = false;
+    boolean hadRuntimeError = false;
+    boolean exceededBudget = false;  // The runtime error was a `BudgetExceededError`
+    boolean errorAtEnd = false;  // The first error was at the end of the input, so more may fix it
+
+    ErrorReporter(PrintStream err) {
+        this.err = err;
+    }
+
+    // Error handling is vital!
+    // Separate the code that GENERATES the errors from the code that REPORTS them.
+
+    private void report(int line, String where, String message) {
+        // Remember to tell the user the exact position of the error
+        err.println("[line " + line + "] Error" + where + ": " + message);
+        hadError = true;
+    }
+
+    void error(int line, String message) {
+        report(line, "", message);
+    }
+
+    void error(Token token, String message) {
+        if (!hadError)  errorAtEnd = token.type == TokenType.EOF;
+        if (token.type == TokenType.EOF)
+            report(token.line, " at end", message);
+        else
+            report(token.line, " at '" + token.lexeme + "'", message);
+    }
+
+    // For problems that don't stop the script, like a cache entry that can't be written
+    void warning(String message) {
+        err.println("Warning: " + message);
+    }
+
+    void runtimeError(RuntimeError error) {
+        err.println(error.getMessage() + "\n[line " + error.token.line + "]");
+        hadRuntimeError = true;
+        exceededBudget = error instanceof BudgetExceededError;
+    }
+
+    void reset() {
+        hadError = false;
+        hadRuntimeError = false;
+        exceededBudget = false;
+        errorAtEnd = false;
+    }
+}
@@ -0,0 +1,91 @@
+package com.craftinginterpreters.lox;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits on one run of a context, for hosts that run untrusted scripts: a number
+ * of steps (loop iterations and calls), a wall-clock timeout, and a number of
+ * allocations (instances, closures and bound methods, strings built at runtime
+ * or by natives, lists, maps and their elements, and the elements of each
+ * `Float64Array`). Going over any of them stops the script with a runtime
+ * error, and `LoxContext.exceededBudget` tells the host which error it was.
+ * Natives that go over long sequences take steps as they go, every so many
+ * elements or characters.
+ *
+ * Interpreters take steps and allocations from the budget in slices, so the
+ * hot paths only decrement a field of their own; the budget is charged, and the
+ * deadline checked, once per slice. The limits are thus approximate by up to a
+ * slice per task. A task blocked on a channel is not woken up by the deadline.
+ */
+public class ExecutionBudget {
+    public static final ExecutionBudget UNLIMITED = new ExecutionBudget(Long.MAX_VALUE, null, Long.MAX_VALUE);
+
+    static final int SLICE = 1024;
+
+    private final long steps;
+    private final Duration timeout;  // `null` for none
+    private final long allocations;
+
+    public ExecutionBudget(long steps, Duration timeout, long allocations) {
+        this.steps = steps;
+        this.timeout = timeout;
+        this.allocations = allocations;
+    }
+
+    Meter start() {
+        return new Meter(this);
+    }
+
+    // What is left of a budget during one run, shared by all the tasks of the run
+    static class Meter {
+        private final AtomicLong steps;  // `null` if unlimited
+        private final AtomicLong allocations;
+        private final long deadline;
+        private final boolean hasDeadline;
+
+        private Meter(ExecutionBudget budget) {
+            this.steps = budget.steps == Long.MAX_VALUE ? null : new AtomicLong(budget.steps);
+            this.allocations = budget.allocations == Long.MAX_VALUE ? null : new AtomicLong(budget.allocations);
+            this.hasDeadline = budget.timeout != null;
+            this.deadline = hasDeadline ? System.nanoTime() + budget.timeout.toNanos() : 0;
+        }
+
+        // Whether taking steps can run out, or past the deadline
+        boolean isLimited() {
+            return steps != null || hasDeadline;
+        }
+
+        // Returns the next slice of steps
+        int steps(Token token) {
+            if (hasDeadline && System.nanoTime() - deadline > 0)
+                throw new BudgetExceededError(token, "Execution timed out.");
+            if (steps == null)  // Still come back for the deadline
+                return hasDeadline ? SLICE : Integer.MAX_VALUE;
+            return take(steps, token, "Execution step budget exceeded.");
+        }
+
+        // Returns the next slice of allocations
+        int allocations(Token token) {
+            if (allocations == null)  return Integer.MAX_VALUE;
+            return take(allocations, token, "Allocation budget exceeded.");
+        }
+
+        // Takes `count` allocations at once, for natives that allocate in bulk
+        void allocate(Token token, long count) {
+            if (allocations != null && allocations.addAndGet(-count) < 0)
+                throw new BudgetExceededError(token, "Allocation budget exceeded.");
+        }
+
+        private static int take(AtomicLong left, Token token, String message) {
+            while (true) {
+                long available = left.get();
+                if (available <= 0)
+                    throw new BudgetExceededError(token, message);
+                long slice = Math.min(SLICE, available);
+                if (left.compareAndSet(available, available - slice))
+                    return (int)slice;
+            }
+        }
+    }
+}
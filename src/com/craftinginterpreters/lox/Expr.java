@@ -37,6 +37,8 @@ abstract class Expr {
 
         final Token name;
         final Expr value;
+        int depth = -1;
+        GlobalEnvironment.Slot slot;
     }
 
     static class Binary extends Expr {
@@ -102,7 +104,8 @@ abstract class Expr {
     }
 
     static class Lambda extends Expr {
-        Lambda(List<Token> params, List<Stmt> body) {
+        Lambda(Token keyword, List<Token> params, List<Stmt> body) {
+            this.keyword = keyword;
             this.params = params;
             this.body = body;
         }
@@ -112,6 +115,7 @@ abstract class Expr {
             return visitor.visitLambdaExpr(this);
         }
 
+        final Token keyword;
         final List<Token> params;
         final List<Stmt> body;
     }
@@ -176,6 +180,7 @@ abstract class Expr {
 
         final Token keyword;
         final Token method;
+        int depth = -1;
     }
 
     static class This extends Expr {
@@ -189,6 +194,7 @@ abstract class Expr {
         }
 
         final Token keyword;
+        int depth = -1;
     }
 
     static class Unary extends Expr {
@@ -217,6 +223,8 @@ abstract class Expr {
         }
 
         final Token name;
+        int depth = -1;
+        GlobalEnvironment.Slot slot;
     }
 
 
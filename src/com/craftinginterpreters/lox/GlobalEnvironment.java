@@ -0,0 +1,178 @@
+package com.craftinginterpreters.lox;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The global scope, shared by every task and worker of a context. Each global
+ * lives in a `Cell`, created the first time its name is defined or looked up and
+ * never removed. Every name gets a slot number, the same in all the tables of
+ * an engine's contexts (see `Slots`), and a table keeps its cells in an array
+ * indexed by slot. The resolver (or `AstReader`, for a cached program) gives
+ * `Expr.Variable` and `Expr.Assign` the slot of their name when the tree is
+ * built, so an access is an array read and a volatile read or write of the
+ * cell: no hashing, no locks, and no writes to the tree. Holding slots rather
+ * than cells lets a `Program` run in many contexts without keeping the globals
+ * of any of them alive; a slot also tells which engine it is from, so a program
+ * run in the contexts of another engine looks its names up instead.
+ *
+ * `mark` records the current values as a baseline and `reset` brings the table
+ * back to it. The first write to a cell after a mark or a reset queues the cell,
+ * so a reset only touches the globals that were written, and reads pay nothing.
+ */
+class GlobalEnvironment extends Environment {
+    // The value of a cell whose name has been looked up but never defined
+    private static final Object UNDEFINED = new Object();
+
+    // Cells are published to lock-free readers with a release store into `cells`
+    private static final VarHandle CELLS = MethodHandles.arrayElementVarHandle(Cell[].class);
+
+    // The slots of the global names of one engine, which grow as long as it lives
+    static final class Slots {
+        // For the interpreters and resolvers that are used without an engine
+        static final Slots STANDALONE = new Slots();
+
+        private final Map<String, Slot> slots = new ConcurrentHashMap<>();
+        private final AtomicInteger count = new AtomicInteger();
+
+        Slot slot(String name) {
+            Slot slot = slots.get(name);  // Lock-free when it exists, which is almost always
+            return slot != null ? slot
+                    : slots.computeIfAbsent(name, key -> new Slot(this, count.getAndIncrement()));
+        }
+    }
+
+    // Immutable, and set before the tree is shared
+    static final class Slot {
+        final Slots table;
+        final int index;
+
+        private Slot(Slots table, int index) {
+            this.table = table;
+            this.index = index;
+        }
+    }
+
+    static final class Cell {
+        private final GlobalEnvironment owner;
+        final String name;
+        private volatile Object value = UNDEFINED;
+        private Object baseline = UNDEFINED;
+        private volatile int writtenIn = -1;  // The last generation that queued this cell
+
+        private Cell(GlobalEnvironment owner, String name) {
+            this.owner = owner;
+            this.name = name;
+        }
+
+        Object get(Token token) {
+            Object value = this.value;
+            if (value == UNDEFINED)
+                throw new RuntimeError(token, "Undefined variable '" + name + "'.");
+            return value;
+        }
+
+        void assign(Token token, Object value) {
+            // Only `reset` undefines globals, never while the table is in use, so
+            // checking first can't lose a definition
+            if (this.value == UNDEFINED)
+                throw new RuntimeError(token, "Undefined variable '" + name + "'.");
+            write(value);
+        }
+
+        private void write(Object value) {
+            // Racing writers may both queue the cell, resetting it twice is harmless
+            int generation = owner.generation;
+            if (writtenIn != generation) {
+                writtenIn = generation;
+                owner.written.add(this);
+            }
+            this.value = value;
+        }
+    }
+
+    final Slots slots;
+    // Written under the lock of `this`; racy reads that miss a cell retry under it
+    private volatile Cell[] cells = new Cell[64];
+    private final Queue<Cell> written = new ConcurrentLinkedQueue<>();
+    private volatile int generation = 0;
+
+    GlobalEnvironment(Slots slots) {
+        this.slots = slots;
+    }
+
+    Cell cell(int slot, String name) {
+        Cell[] cells = this.cells;
+        if (slot < cells.length) {
+            Cell cell = (Cell)CELLS.getAcquire(cells, slot);
+            if (cell != null)  return cell;
+        }
+        return createCell(slot, name);
+    }
+
+    private synchronized Cell createCell(int slot, String name) {
+        if (slot >= cells.length)
+            cells = Arrays.copyOf(cells, Math.max(slot + 1, cells.length * 2));
+        if (cells[slot] == null)
+            CELLS.setRelease(cells, slot, new Cell(this, name));
+        return cells[slot];
+    }
+
+    Cell cell(String name) {
+        return cell(slots.slot(name).index, name);
+    }
+
+    @Override
+    void share() {
+        // Cells are safe to share already
+    }
+
+    @Override
+    void define(String name, Object value) {
+        cell(name).write(value);
+    }
+
+    @Override
+    Object get(Token name) {
+        return cell(name.lexeme).get(name);
+    }
+
+    @Override
+    void assign(Token name, Object value) {
+        cell(name.lexeme).assign(name, value);
+    }
+
+    // Neither `mark` nor `reset` may run while a task is still using the table
+
+    void mark() {
+        for (Cell cell : cells)
+            if (cell != null)
+                cell.baseline = cell.value;
+        written.clear();
+        generation++;
+    }
+
+    // Restores every global to its value at the last `mark`, undefining later ones
+    void reset() {
+        for (Cell cell = written.poll(); cell != null; cell = written.poll())
+            cell.value = cell.baseline;
+        generation++;
+    }
+
+    @Override
+    Map<String, Object> bindings() {
+        Map<String, Object> bindings = new HashMap<>();
+        for (Cell cell : cells) {
+            if (cell != null && cell.value != UNDEFINED)
+                bindings.put(cell.name, cell.value);
+        }
+        return bindings;
+    }
+}
@@ -0,0 +1,136 @@
+package com.craftinginterpreters.lox;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The contents of the objects reachable from the globals of a context, recorded
+ * by `LoxContext.mark` so that `LoxContext.reset` can put them back. A pooled
+ * context thus gives each request the prelude's objects as the prelude left
+ * them, not as the last request did.
+ *
+ * The environments captured by closures, instances, lists and maps are
+ * recorded; functions and classes can't be changed, and only lead to them.
+ * Natives hold no script state. Any other object, like a channel or a
+ * `Float64Array`, can't be put back, so recording it fails. Restoring goes over
+ * every recorded object, but only rebuilds the lists and maps that changed.
+ */
+class HeapCheckpoint {
+    private final List<Object> objects = new ArrayList<>();
+    private final List<Object> contents = new ArrayList<>();  // Of each of `objects`
+
+    HeapCheckpoint(Interpreter interpreter) {
+        Set<Object> seen = LoxList.identitySet();
+        seen.add(interpreter.globals);  // Its bindings are reset by `GlobalEnvironment`
+        for (Object value : interpreter.globals.bindings().values())
+            record(value, seen);
+    }
+
+    private void record(Object value, Set<Object> seen) {
+        if (value == null || value instanceof Boolean || value instanceof Double ||
+                value instanceof String || !seen.add(value))
+            return;
+
+        if (value instanceof Environment) {
+            Environment environment = (Environment)value;
+            Map<String, Object> bindings = environment.bindings();
+            save(environment, bindings);
+            record(environment.enclosing, seen);
+            for (Object binding : bindings.values())
+                record(binding, seen);
+        } else if (value instanceof LoxInstance) {
+            LoxInstance instance = (LoxInstance)value;
+            Map<String, Object> fields = instance.fields();
+            save(instance, fields);
+            record(instance.klass, seen);
+            for (Object field : fields.values())
+                record(field, seen);
+        } else if (value instanceof LoxList) {
+            LoxList list = (LoxList)value;
+            Object[] elements = new Object[list.size()];
+            for (int i = 0; i < elements.length; ++i)
+                elements[i] = list.get(i);
+            save(list, elements);
+            for (Object element : elements)
+                record(element, seen);
+        } else if (value instanceof LoxMap) {
+            LoxMap map = (LoxMap)value;
+            LoxList keys = map.keys();
+            Object[] entries = new Object[keys.size() * 2];  // Keys and values, in turn
+            for (int i = 0; i < keys.size(); ++i) {
+                entries[2 * i] = keys.get(i);
+                entries[2 * i + 1] = map.get(keys.get(i));
+            }
+            save(map, entries);
+            for (Object entry : entries)
+                record(entry, seen);
+        } else if (value instanceof LoxFunction) {
+            record(((LoxFunction)value).closure, seen);
+        } else if (value instanceof LoxLambda) {
+            record(((LoxLambda)value).closure, seen);
+        } else if (value instanceof MemoizedFunction) {
+            record(((MemoizedFunction)value).function, seen);
+        } else if (value instanceof LoxClass) {
+            LoxClass klass = (LoxClass)value;
+            record(klass.superclass, seen);
+            for (LoxFunction method : klass.methods.values())
+                record(method, seen);
+        } else if (!(value instanceof LoxCallable)) {
+            throw new IllegalArgumentException(
+                    "The globals lead to " + value + ", which can't be restored.");
+        }
+    }
+
+    private void save(Object object, Object content) {
+        objects.add(object);
+        contents.add(content);
+    }
+
+    @SuppressWarnings("unchecked")
+    void restore() {
+        for (int i = 0; i < objects.size(); ++i) {
+            Object object = objects.get(i);
+            Object content = contents.get(i);
+            if (object instanceof Environment)
+                ((Environment)object).restore((Map<String, Object>)content);
+            else if (object instanceof LoxInstance)
+                ((LoxInstance)object).restore((Map<String, Object>)content);
+            else if (object instanceof LoxList)
+                restore((LoxList)object, (Object[])content);
+            else
+                restore((LoxMap)object, (Object[])content);
+        }
+    }
+
+    private static void restore(LoxList list, Object[] elements) {
+        if (list.size() == elements.length) {
+            int i = 0;
+            while (i < elements.length && same(list.get(i), elements[i]))
+                i++;
+            if (i == elements.length)  return;
+        }
+        list.clear();
+        for (Object element : elements)
+            list.add(element);
+    }
+
+    private static void restore(LoxMap map, Object[] entries) {
+        if (map.size() * 2 == entries.length) {
+            int i = 0;
+            while (i < entries.length && map.containsKey(entries[i]) &&
+                    same(map.get(entries[i]), entries[i + 1]))
+                i += 2;
+            if (i == entries.length)  return;
+        }
+        map.clear();
+        for (int i = 0; i < entries.length; i += 2)
+            map.put(entries[i], entries[i + 1]);
+    }
+
+    // Numbers come back from lists boxed anew
+    private static boolean same(Object a, Object b) {
+        return a == b || a instanceof Double && a.equals(b);
+    }
+}
@@ -0,0 +1,357 @@
+package com.craftinginterpreters.lox;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Serializes the global environment of an interpreter that has run a prelude,
+ * and restores it into a fresh interpreter without executing the prelude again.
+ *
+ * The values reachable from the globals form a graph with cycles: closures share
+ * environments that contain the closures themselves, and instances may refer to
+ * themselves. So the snapshot is written in two passes. First come the objects'
+ * shells, holding only what their constructors need (an environment's enclosing
+ * one, a function's closure, an instance's class), ordered so that these always
+ * come before the objects that need them. Then come their contents (bindings,
+ * methods, fields, and the elements of lists and maps), which may refer to any
+ * object. Natives are not serialized; they are written by name and taken from
+ * the fresh interpreter's own globals, and a snapshot that names a native the
+ * interpreter doesn't have fails to load. The globals are only defined once
+ * everything has been read, so a failed load leaves the interpreter as it was.
+ */
+class HeapSnapshot {
+    // Value tags, after the literal tags of `AstWriter`
+    private static final byte OBJECT = 16, NATIVE = 17, GLOBALS = 18;
+
+    // Object tags
+    private static final byte ENVIRONMENT = 0, FUNCTION = 1, LAMBDA = 2, CLASS = 3, INSTANCE = 4, LIST = 5, MAP = 6;
+
+    static void write(DataOutputStream out, Interpreter interpreter) throws IOException {
+        new Writer(out, interpreter).write();
+    }
+
+    static void read(DataInputStream in, Interpreter interpreter) throws IOException {
+        new Reader(in, interpreter).read();
+    }
+
+
+    private static class Writer {
+        private final DataOutputStream out;
+        private final Environment globals;
+        private final AstWriter ast;
+        private final List<Object> objects = new ArrayList<>();
+        private final Map<Object, Integer> ids = new IdentityHashMap<>();
+        private final Map<Object, Integer> declarations = new IdentityHashMap<>();
+        private final Map<Object, String> natives = new IdentityHashMap<>();
+
+        Writer(DataOutputStream out, Interpreter interpreter) {
+            this.out = out;
+            this.globals = interpreter.globals;
+            this.ast = new AstWriter(out);
+
+            // Natives are known by the names they are registered under
+            Map<String, Object> bindings = globals.bindings();
+            for (String name : interpreter.natives.names()) {
+                Object value = bindings.get(name);
+                if (value instanceof LoxCallable && !(value instanceof LoxFunction) &&
+                        !(value instanceof LoxLambda) && !(value instanceof LoxClass))
+                    natives.put(value, name);
+            }
+        }
+
+        void write() throws IOException {
+            Map<String, Object> bindings = globals.bindings();
+            for (Object value : bindings.values())
+                collect(value);
+
+            out.writeInt(objects.size());
+            for (Object object : objects)
+                writeShell(object);
+            for (Object object : objects)
+                writeContents(object);
+            writeBindings(bindings);
+        }
+
+        // Number every reachable object, constructor dependencies first
+        private void collect(Object value) throws IOException {
+            if (value == null || value instanceof Boolean || value instanceof Double ||
+                    value instanceof String || value == globals ||
+                    natives.containsKey(value) || ids.containsKey(value))
+                return;
+
+            if (value instanceof Environment)
+                collect(((Environment)value).enclosing);
+            else if (value instanceof LoxFunction)
+                collect(((LoxFunction)value).closure);
+            else if (value instanceof LoxLambda)
+                collect(((LoxLambda)value).closure);
+            else if (value instanceof LoxClass)
+                collect(((LoxClass)value).superclass);
+            else if (value instanceof LoxInstance)
+                collect(((LoxInstance)value).klass);
+            else if (!(value instanceof LoxList) && !(value instanceof LoxMap))
+                throw new IOException("Cannot snapshot " + value + ".");
+
+            if (ids.containsKey(value))  return;  // Reached again through its dependency
+            ids.put(value, objects.size());
+            objects.add(value);
+
+            if (value instanceof LoxList) {
+                LoxList list = (LoxList)value;
+                for (int i = 0; i < list.size(); ++i)
+                    collect(list.get(i));
+            } else if (value instanceof LoxMap) {
+                LoxList keys = ((LoxMap)value).keys();
+                for (int i = 0; i < keys.size(); ++i) {
+                    collect(keys.get(i));
+                    collect(((LoxMap)value).get(keys.get(i)));
+                }
+            } else {
+                for (Object content : contents(value).values())
+                    collect(content);
+            }
+        }
+
+        private void writeShell(Object object) throws IOException {
+            if (object instanceof Environment) {
+                out.writeByte(ENVIRONMENT);
+                writeValue(((Environment)object).enclosing);
+            } else if (object instanceof LoxFunction) {
+                LoxFunction function = (LoxFunction)object;
+                out.writeByte(FUNCTION);
+                writeValue(function.closure);
+                writeDeclaration(function.declaration);
+                out.writeBoolean(function.isInitializer);
+                out.writeBoolean(function.isStatic);
+            } else if (object instanceof LoxLambda) {
+                LoxLambda lambda = (LoxLambda)object;
+                out.writeByte(LAMBDA);
+                writeValue(lambda.closure);
+                writeDeclaration(lambda.lambda);
+            } else if (object instanceof LoxClass) {
+                LoxClass klass = (LoxClass)object;
+                out.writeByte(CLASS);
+                out.writeUTF(klass.name);
+                out.writeInt(klass.line);
+                writeValue(klass.superclass);
+            } else if (object instanceof LoxInstance) {
+                out.writeByte(INSTANCE);
+                writeValue(((LoxInstance)object).klass);
+            } else {
+                out.writeByte(object instanceof LoxList ? LIST : MAP);
+            }
+        }
+
+        private void writeContents(Object object) throws IOException {
+            if (object instanceof LoxList) {
+                LoxList list = (LoxList)object;
+                out.writeInt(list.size());
+                for (int i = 0; i < list.size(); ++i)
+                    writeValue(list.get(i));
+            } else if (object instanceof LoxMap) {
+                LoxMap map = (LoxMap)object;
+                LoxList keys = map.keys();
+                out.writeInt(keys.size());
+                for (int i = 0; i < keys.size(); ++i) {
+                    writeValue(keys.get(i));
+                    writeValue(map.get(keys.get(i)));
+                }
+            } else {
+                writeBindings(contents(object));
+            }
+        }
+
+        private void writeBindings(Map<String, ?> bindings) throws IOException {
+            out.writeInt(bindings.size());
+            for (Map.Entry<String, ?> binding : bindings.entrySet()) {
+                out.writeUTF(binding.getKey());
+                writeValue(binding.getValue());
+            }
+        }
+
+        private void writeValue(Object value) throws IOException {
+            if (value == null) {
+                out.writeByte(AstWriter.NIL);
+            } else if (value instanceof Boolean) {
+                out.writeByte((boolean)value ? AstWriter.TRUE : AstWriter.FALSE);
+            } else if (value instanceof Double) {
+                out.writeByte(AstWriter.NUMBER);
+                out.writeDouble((double)value);
+            } else if (value instanceof String) {
+                out.writeByte(AstWriter.STRING);
+                byte[] bytes = ((String)value).getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);  // `writeUTF` can't hold strings built at runtime
+                out.write(bytes);
+            } else if (value == globals) {
+                out.writeByte(GLOBALS);
+            } else if (natives.containsKey(value)) {
+                out.writeByte(NATIVE);
+                out.writeUTF(natives.get(value));
+            } else {
+                out.writeByte(OBJECT);
+                out.writeInt(ids.get(value));
+            }
+        }
+
+        // Methods bound to different instances share one declaration, so write it only once
+        private void writeDeclaration(Object declaration) throws IOException {
+            Integer id = declarations.get(declaration);
+            out.writeBoolean(id != null);
+            if (id != null) {
+                out.writeInt(id);
+                return;
+            }
+
+            declarations.put(declaration, declarations.size());
+            if (declaration instanceof Stmt)
+                ast.writeStatement((Stmt)declaration);
+            else
+                ast.writeExpression((Expr)declaration);
+        }
+
+        private static Map<String, ?> contents(Object object) {
+            if (object instanceof Environment)  return ((Environment)object).bindings();
+            if (object instanceof LoxClass)  return ((LoxClass)object).methods;
+            if (object instanceof LoxInstance)  return ((LoxInstance)object).fields();
+            return Map.of();  // A function's state is all in its shell
+        }
+    }
+
+
+    private static class Reader {
+        private final DataInputStream in;
+        private final Environment globals;
+        private final Map<String, Object> natives;
+        private final AstReader ast;
+        private final List<Object> objects = new ArrayList<>();
+        private final List<Object> declarations = new ArrayList<>();
+
+        Reader(DataInputStream in, Interpreter interpreter) {
+            this.in = in;
+            this.globals = interpreter.globals;
+            this.natives = globals.bindings();
+            this.ast = new AstReader(in, interpreter.globals.slots);
+        }
+
+        void read() throws IOException {
+            int count = in.readInt();
+            for (int i = 0; i < count; ++i)
+                objects.add(readShell());
+            for (Object object : objects)
+                readContents(object);
+
+            Map<String, Object> bindings = new LinkedHashMap<>();
+            readBindings(bindings::put);
+            bindings.forEach(globals::define);
+        }
+
+        private Object readShell() throws IOException {
+            byte tag = in.readByte();
+            switch (tag) {
+                case ENVIRONMENT:
+                    return new Environment((Environment)readValue());
+                case FUNCTION: {
+                    Environment closure = (Environment)readValue();
+                    Stmt.Function declaration = (Stmt.Function)readDeclaration(true);
+                    boolean isInitializer = in.readBoolean();
+                    boolean isStatic = in.readBoolean();
+                    return new LoxFunction(declaration, closure, isInitializer, isStatic);
+                }
+                case LAMBDA: {
+                    Environment closure = (Environment)readValue();
+                    return new LoxLambda((Expr.Lambda)readDeclaration(false), closure);
+                }
+                case CLASS: {
+                    String name = in.readUTF();
+                    int line = in.readInt();
+                    return new LoxClass(name, line, (LoxClass)readValue(), new HashMap<>());
+                }
+                case INSTANCE:
+                    return new LoxInstance((LoxClass)readValue());
+                case LIST:
+                    return new LoxList();
+                case MAP:
+                    return new LoxMap();
+            }
+            throw new IOException("Unknown object tag " + tag + ".");
+        }
+
+        private void readContents(Object object) throws IOException {
+            if (object instanceof Environment) {
+                readBindings(((Environment)object)::define);
+            } else if (object instanceof LoxClass) {
+                Map<String, LoxFunction> methods = ((LoxClass)object).methods;
+                readBindings((name, method) -> methods.put(name, (LoxFunction)method));
+            } else if (object instanceof LoxInstance) {
+                readBindings(((LoxInstance)object)::set);
+            } else if (object instanceof LoxList) {
+                LoxList list = (LoxList)object;
+                int count = in.readInt();
+                for (int i = 0; i < count; ++i)
+                    list.add(readValue());
+            } else if (object instanceof LoxMap) {
+                LoxMap map = (LoxMap)object;
+                int count = in.readInt();
+                for (int i = 0; i < count; ++i) {
+                    Object key = readValue();
+                    map.put(key, readValue());
+                }
+            } else {
+                in.readInt();  // The empty contents of a function
+            }
+        }
+
+        private void readBindings(BiConsumer<String, Object> define) throws IOException {
+            int count = in.readInt();
+            for (int i = 0; i < count; ++i) {
+                String name = in.readUTF();
+                define.accept(name, readValue());
+            }
+        }
+
+        private Object readValue() throws IOException {
+            byte tag = in.readByte();
+            switch (tag) {
+                case AstWriter.NIL:  return null;
+                case AstWriter.TRUE:  return true;
+                case AstWriter.FALSE:  return false;
+                case AstWriter.NUMBER:  return in.readDouble();
+                case AstWriter.STRING: {
+                    byte[] bytes = new byte[in.readInt()];
+                    in.readFully(bytes);
+                    return new String(bytes, StandardCharsets.UTF_8);
+                }
+                case GLOBALS:  return globals;
+                case NATIVE:  return readNative();
+                case OBJECT:  return objects.get(in.readInt());
+            }
+            throw new IOException("Unknown value tag " + tag + ".");
+        }
+
+        private Object readNative() throws IOException {
+            String name = in.readUTF();
+            Object function = natives.get(name);
+            if (function == null)
+                throw new IOException("Native '" + name + "' is not defined.");
+            return function;
+        }
+
+        private Object readDeclaration(boolean isStatement) throws IOException {
+            if (in.readBoolean())
+                return declarations.get(in.readInt());
+
+            Object declaration = isStatement ? ast.readStmt() : ast.readExpr();
+            declarations.add(declaration);
+            return declaration;
+        }
+    }
+}
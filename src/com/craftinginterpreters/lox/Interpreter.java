@@ -1,28 +1,116 @@
 package com.craftinginterpreters.lox;
 
+import java.io.PrintStream;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Map;
 import java.util.HashMap;
 
 class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
-    final Environment globals = new Environment();
-    private Environment environment = globals;
-    private final Map<Expr, Integer> locals = new HashMap<>();
-
+    final NativeRegistry natives;
+    final GlobalEnvironment globals;
+    private Environment environment;
+    final ErrorReporter reporter;
+    PrintStream out;  // Redirected by `LoxContextPool` between requests
+    private ExecutionBudget.Meter meter = ExecutionBudget.UNLIMITED.start();
+    private int steps = 0, allocations = 0;  // Left in the current slices of `meter`
+    LoxScheduler.TimeSlice timeSlice;  // Set while run by a `LoxScheduler`, never inherited
+    boolean memoizePure = false;  // Whether pure functions cache their results
+    ShadowStack shadowStack;  // Of the Lox calls, while a `LoxProfiler` samples them
+    Token callSite;  // Of the latest call, where natives report running over the budget
+
+    // An interpreter of its own, for tools and benchmarks
     Interpreter() {
-        globals.define("clock", new LoxCallable() {
-            @Override
-            public int arity() { return 0; }
+        this(new ErrorReporter(System.err), System.out, NativeRegistry.core());
+    }
 
-            @Override
-            public Object call(Interpreter interpreter, List<Object> arguments) {
-                return (double)System.currentTimeMillis() / 1000.0;
-            }
+    Interpreter(ErrorReporter reporter, PrintStream out, NativeRegistry natives) {
+        this(reporter, out, natives, GlobalEnvironment.Slots.STANDALONE);
+    }
 
-            @Override
-            public String toString() { return "<native fn>"; }
-        });
+    Interpreter(ErrorReporter reporter, PrintStream out, NativeRegistry natives,
+                GlobalEnvironment.Slots slots) {
+        this.natives = natives;
+        this.globals = new GlobalEnvironment(slots);
+        this.environment = globals;
+        this.reporter = reporter;
+        this.out = out;
+
+        natives.defineAll(globals);
+    }
+
+    // The interpreter of a task: a call stack of its own over the same globals
+    Interpreter(Interpreter parent) {
+        this.natives = parent.natives;
+        this.globals = parent.globals;
+        this.environment = globals;
+        this.reporter = parent.reporter;
+        this.out = parent.out;
+        this.meter = parent.meter;
+        this.memoizePure = parent.memoizePure;
+        if (parent.shadowStack != null)
+            this.shadowStack = parent.shadowStack.profiler.newStack();
+    }
+
+    void setBudget(ExecutionBudget budget) {
+        meter = budget.start();
+        steps = 0;
+        allocations = 0;
+    }
+
+    // Loop back-edges and calls take a step, and are safepoints for the scheduler.
+    // So do natives for each element of the sequences they go over.
+    void step(Token token) {
+        if (--steps < 0)
+            steps = nextSlice(token) - 1;
+    }
+
+    private int nextSlice(Token token) {
+        int slice = meter.steps(token);
+        if (timeSlice == null)  return slice;
+
+        timeSlice.safepoint();
+        return Math.min(slice, ExecutionBudget.SLICE);
+    }
+
+    // Natives that may block call these around it, so that a scheduled script
+    // lets others run meanwhile
+    void beforeBlocking() {
+        if (timeSlice != null)  timeSlice.pause();
+    }
+
+    void afterBlocking() {
+        if (timeSlice != null)  timeSlice.resume();
+    }
+
+    void allocate(Token token) {
+        if (--allocations < 0)
+            allocations = meter.allocations(token) - 1;
+    }
+
+    // For natives and native objects that allocate a value at a time, at the call site
+    void allocate() {
+        allocate(callSite);
+    }
+
+    // For natives that allocate in bulk, at the call site
+    void allocate(long count) {
+        meter.allocate(callSite, count);
+    }
+
+    // For natives that go over long sequences without calling back, at the call site
+    void step() {
+        step(callSite);
+    }
+
+    // Whether `step` can stop the script or let others run, so that natives that
+    // would only call it to check can skip it otherwise
+    boolean isMetered() {
+        return timeSlice != null || meter.isLimited();
+    }
+
+    void interpret(Program program) {
+        interpret(program.statements);
     }
 
     void interpret(List<Stmt> statements) {
@@ -30,7 +118,7 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
             for (Stmt statement : statements)
                 execute(statement);
         } catch (RuntimeError error) {
-            Lox.runtimeError(error);
+            reporter.runtimeError(error);
         }
     }
 
@@ -70,6 +158,8 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
             case PLUS:
                 if (left instanceof Double && right instanceof Double)
                     return (double)left + (double)right;
+                if (left instanceof String || right instanceof String)
+                    allocate(expr.operator);
                 if (left instanceof String && right instanceof String)
                     return (String)left + (String)right;
                 if (left instanceof String)
@@ -117,26 +207,41 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
     @Override
     public Object visitVariableExpr(Expr.Variable expr) {
-        return lookUpVariable(expr.name, expr);
+        if (expr.depth >= 0)
+            return environment.getAt(expr.depth, expr.name.lexeme);
+        return globalCell(expr).get(expr.name);
     }
 
-    private Object lookUpVariable(Token name, Expr expr) {
-        Integer distance = locals.get(expr);
-        if (distance != null)
-            return environment.getAt(distance, name.lexeme);
+    private Object lookUpVariable(Token name, int depth) {
+        if (depth >= 0)
+            return environment.getAt(depth, name.lexeme);
         else
             return globals.get(name);
     }
 
+    // The resolver gave the node its slot, the same in every context of the engine
+    private GlobalEnvironment.Cell globalCell(Expr.Variable expr) {
+        return globalCell(expr.slot, expr.name);
+    }
+
+    private GlobalEnvironment.Cell globalCell(Expr.Assign expr) {
+        return globalCell(expr.slot, expr.name);
+    }
+
+    private GlobalEnvironment.Cell globalCell(GlobalEnvironment.Slot slot, Token name) {
+        if (slot.table == globals.slots)
+            return globals.cell(slot.index, name.lexeme);
+        return globals.cell(name.lexeme);  // A program of another engine
+    }
+
     @Override
     public Object visitAssignExpr(Expr.Assign expr) {
         Object value = evaluate(expr.value);
 
-        Integer distance = locals.get(expr);
-        if (distance != null)
-            environment.assignAt(distance, expr.name, value);
+        if (expr.depth >= 0)
+            environment.assignAt(expr.depth, expr.name, value);
         else
-            globals.assign(expr.name, value);
+            globalCell(expr).assign(expr.name, value);
 
         return value;
     }
@@ -156,11 +261,51 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
     @Override
     public Object visitCallExpr(Expr.Call expr) {
-        Object callee = evaluate(expr.callee);
+        if (!(expr.callee instanceof Expr.Get))
+            return call(evaluate(expr.callee), expr);
+
+        // `object.method(...)` on a native object skips building a function for the method
+        Expr.Get get = (Expr.Get)expr.callee;
+        Object object = evaluate(get.object);
+        if (!(object instanceof LoxNativeObject))
+            return call(getProperty(object, get.name), expr);
+        if (object instanceof LoxFloat64Array) {
+            String method = get.name.lexeme;
+            int count = expr.arguments.size();
+            if (method.equals("get") && count == 1 || method.equals("set") && count == 2)
+                return accessElement((LoxFloat64Array)object, count == 2, expr);
+        }
 
-        List<Object> arguments = new ArrayList<>();
-        for (Expr argument : expr.arguments)
-            arguments.add(evaluate(argument));
+        List<Object> arguments = evaluateArguments(expr);
+        step(expr.paren);
+        callSite = expr.paren;
+        try {
+            return ((LoxNativeObject)object).invoke(this, get.name, arguments);
+        } catch (NativeError error) {
+            throw new RuntimeError(expr.paren, error.getMessage());
+        }
+    }
+
+    // `array.get(index)` and `array.set(index, value)`, without an argument list
+    private Object accessElement(LoxFloat64Array array, boolean set, Expr.Call expr) {
+        Object index = evaluate(expr.arguments.get(0));
+        Object value = set ? evaluate(expr.arguments.get(1)) : null;
+        step(expr.paren);
+        try {
+            if (!set)
+                return array.get(array.index(index));
+            array.set(array.index(index), LoxFloat64Array.number(value));
+            return null;
+        } catch (NativeError error) {
+            throw new RuntimeError(expr.paren, error.getMessage());
+        }
+    }
+
+    private Object call(Object callee, Expr.Call expr) {
+        if (callee instanceof NativeRegistry.BoundNative && expr.arguments.size() <= 3)
+            return callNative((NativeRegistry.BoundNative)callee, expr);
+
+        List<Object> arguments = evaluateArguments(expr);
 
         if (!(callee instanceof LoxCallable))
             throw new RuntimeError(expr.paren, "Can only call functions and classes");
@@ -172,28 +317,76 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
                     function.arity() + " arguments but got " +
                     arguments.size() + ".");
 
-        return function.call(this, arguments);
+        step(expr.paren);
+        if (function instanceof LoxClass)
+            allocate(expr.paren);
+        callSite = expr.paren;
+
+        try {
+            return function.call(this, arguments);
+        } catch (NativeError error) {
+            throw new RuntimeError(expr.paren, error.getMessage());
+        }
+    }
+
+    // A registered native, with the arguments passed as they are evaluated rather than in a list
+    private Object callNative(NativeRegistry.BoundNative function, Expr.Call expr) {
+        List<Expr> expressions = expr.arguments;
+        int count = expressions.size();
+        Object a = count > 0 ? evaluate(expressions.get(0)) : null;
+        Object b = count > 1 ? evaluate(expressions.get(1)) : null;
+        Object c = count > 2 ? evaluate(expressions.get(2)) : null;
+
+        if (count != function.arity())
+            throw new RuntimeError(expr.paren, "Expected " +
+                    function.arity() + " arguments but got " + count + ".");
+
+        step(expr.paren);
+        callSite = expr.paren;
+
+        try {
+            switch (count) {
+                case 0:  return function.call0(this);
+                case 1:  return function.call1(this, a);
+                case 2:  return function.call2(this, a, b);
+                default:  return function.call3(this, a, b, c);
+            }
+        } catch (NativeError error) {
+            throw new RuntimeError(expr.paren, error.getMessage());
+        }
+    }
+
+    private List<Object> evaluateArguments(Expr.Call expr) {
+        List<Object> arguments = new ArrayList<>(expr.arguments.size());
+        for (Expr argument : expr.arguments)
+            arguments.add(evaluate(argument));
+        return arguments;
     }
 
     @Override
     public Object visitLambdaExpr(Expr.Lambda expr) {
+        allocate(expr.keyword);
         return new LoxLambda(expr, environment);
     }
 
     @Override
     public Object visitGetExpr(Expr.Get expr) {
-        Object object = evaluate(expr.object);
+        return getProperty(evaluate(expr.object), expr.name);
+    }
 
+    private Object getProperty(Object object, Token name) {
         if (object instanceof LoxInstance)
-            return ((LoxInstance)object).get(expr.name);
+            return ((LoxInstance)object).get(name, this);
+        else if (object instanceof LoxNativeObject)
+            return ((LoxNativeObject)object).get(name);
         else if (object instanceof LoxClass) {  // Can only get static methods from a class
-            LoxFunction staticMethod = ((LoxClass) object).findMethod(expr.name.lexeme);
+            LoxFunction staticMethod = ((LoxClass) object).findMethod(name.lexeme);
             if (!staticMethod.isStatic)
-                throw new RuntimeError(expr.name, "Only classes allow calls for static methods.");
+                throw new RuntimeError(name, "Only classes allow calls for static methods.");
             return staticMethod;
         }
 
-        throw new RuntimeError(expr.name, "Only classes or instances have properties.");
+        throw new RuntimeError(name, "Only classes or instances have properties.");
     }
 
     @Override
@@ -211,12 +404,12 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
     @Override
     public Object visitThisExpr(Expr.This expr) {
-        return lookUpVariable(expr.keyword, expr);
+        return lookUpVariable(expr.keyword, expr.depth);
     }
 
     @Override
     public Object visitSuperExpr(Expr.Super expr) {
-        int distance = locals.get(expr);
+        int distance = expr.depth;
         LoxClass superclass = (LoxClass) environment.getAt(distance, "super");
 
         // The environment of `this` is the one right encapsulated in the environment of `super`
@@ -227,6 +420,7 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         if (method == null)
             throw new RuntimeError(expr.method, "Undefined property '" + expr.method.lexeme + "'.");
 
+        allocate(expr.method);
         return method.bind(object);
     }
 
@@ -239,7 +433,7 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     @Override
     public Void visitPrintStmt(Stmt.Print stmt) {
         Object value = evaluate(stmt.expression);
-        System.out.println(stringify(value));
+        out.println(stringify(value));
         return null;
     }
 
@@ -281,13 +475,109 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
     @Override
     public Void visitWhileStmt(Stmt.While stmt) {
-        while (isTruthy(evaluate(stmt.condition)))
+        while (isTruthy(evaluate(stmt.condition))) {
             execute(stmt.body);
+            step(stmt.keyword);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitForInStmt(Stmt.ForIn stmt) {
+        Object sequence = evaluate(stmt.iterable);
+
+        Environment enclosing = environment;
+        try {
+            if (sequence instanceof LoxRange) {
+                RangeEnvironment loop = new RangeEnvironment(enclosing, stmt.name.lexeme);
+                environment = loop;
+                iterateRange(stmt, (LoxRange)sequence, loop);
+            } else {
+                environment = new Environment(enclosing);  // Holds the loop variable
+                if (sequence instanceof LoxList)
+                    iterateList(stmt, (LoxList)sequence);
+                else
+                    iterate(stmt, iterator(sequence, stmt.keyword));
+            }
+        } catch (NativeError error) {
+            throw new RuntimeError(stmt.keyword, error.getMessage());
+        } finally {
+            environment = enclosing;
+        }
         return null;
     }
 
+    // A counted loop, no iterator involved, and no number boxed unless the body reads it
+    private void iterateRange(Stmt.ForIn stmt, LoxRange range, RangeEnvironment loop) {
+        for (double i = range.start; i < range.end; ++i) {
+            loop.count(i);
+            execute(stmt.body);
+            step(stmt.keyword);
+        }
+    }
+
+    private void iterateList(Stmt.ForIn stmt, LoxList list) {
+        for (int i = 0; i < list.size(); ++i) {
+            environment.define(stmt.name.lexeme, list.get(i));
+            execute(stmt.body);
+            step(stmt.keyword);
+        }
+    }
+
+    private void iterate(Stmt.ForIn stmt, LoxIterator elements) {
+        try {
+            while (elements.hasNext()) {
+                environment.define(stmt.name.lexeme, elements.next());
+                execute(stmt.body);
+                step(stmt.keyword);
+            }
+        } finally {
+            elements.close();
+        }
+    }
+
+    /**
+     * The iterator over `sequence`, for `for-in` and natives like streams.
+     * Instances with an `iterator()` method are iterables, the others are
+     * iterators themselves, read through their `hasNext()` and `next()`.
+     */
+    LoxIterator iterator(Object sequence, Token token) {
+        if (sequence instanceof LoxInstance &&
+                ((LoxInstance)sequence).klass.findMethod("iterator") != null)
+            sequence = iteratorMethod(sequence, "iterator", token).call(this, List.of());
+
+        if (sequence instanceof LoxIterable)
+            return ((LoxIterable)sequence).iterator();
+        if (sequence instanceof LoxIterator)
+            return (LoxIterator)sequence;
+        if (!(sequence instanceof LoxInstance))
+            throw new RuntimeError(token, "Can only iterate over lists, ranges and iterators.");
+
+        LoxCallable hasNext = iteratorMethod(sequence, "hasNext", token);
+        LoxCallable next = iteratorMethod(sequence, "next", token);
+        return new LoxIterator() {
+            @Override
+            public boolean hasNext() {
+                return isTruthy(hasNext.call(Interpreter.this, List.of()));
+            }
+
+            @Override
+            public Object next() {
+                return next.call(Interpreter.this, List.of());
+            }
+        };
+    }
+
+    private LoxCallable iteratorMethod(Object iterator, String name, Token keyword) {
+        Object method = getProperty(iterator, new Token(TokenType.IDENTIFIER, name, null, keyword.line));
+        if (!(method instanceof LoxCallable) || ((LoxCallable)method).arity() != 0)
+            throw new RuntimeError(keyword, "Iterator method '" + name + "' must take no arguments.");
+        return (LoxCallable)method;
+    }
+
     @Override
     public Void visitFunctionStmt(Stmt.Function stmt) {
+        allocate(stmt.name);
         LoxFunction function = new LoxFunction(stmt, environment, false, false);
         environment.define(stmt.name.lexeme, function);
         return null;
@@ -329,7 +619,8 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
             methods.put(staticMethod.name.lexeme, function);
         }
 
-        LoxClass klass = new LoxClass(stmt.name.lexeme, (LoxClass)superclass, methods);
+        LoxClass klass = new LoxClass(stmt.name.lexeme, stmt.name.line,
+                (LoxClass)superclass, methods);
 
         if (superclass != null)
             environment = environment.enclosing;  // Capture the environment where we just bound `super`
@@ -353,12 +644,10 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         stmt.accept(this);
     }
 
-    void resolve(Expr expr, int depth) { locals.put(expr, depth); }
-
 
     // Utils
 
-    private String stringify(Object object) {
+    static String stringify(Object object) {
         if (object == null)  return "nil";
         if (object instanceof Double) {
             String text = object.toString();
@@ -370,14 +659,14 @@ class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     }
 
     // `false` and `nil` are falsey and everything else is truthy
-    private boolean isTruthy(Object object) {
+    static boolean isTruthy(Object object) {
         if (object == null)  return false;
         if (object instanceof Boolean)  return (boolean)object;
 
         return true;
     }
 
-    private boolean isEqual(Object a, Object b) {
+    static boolean isEqual(Object a, Object b) {
         if (a == null & b == null)  return true;
         if (a == null)  return false;  // Since `null` doesn't have an `equal` method
 
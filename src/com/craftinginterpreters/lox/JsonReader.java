@@ -0,0 +1,352 @@
+package com.craftinginterpreters.lox;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A JSON parser that builds Lox values as it reads: objects become maps,
+ * arrays lists, numbers numbers and `null` `nil`, with no tree in between.
+ * `parseJson(text)` and `readJson(path)` read a whole document at once.
+ *
+ * For documents larger than memory, `jsonEvents(path)` returns this reader to
+ * be pulled from: `next()` moves to the next event and returns its name,
+ * `"object"`, `"endObject"`, `"array"`, `"endArray"`, `"key"` or `"value"`, or
+ * `nil` at the end of the document. `value()` returns the key or value of the
+ * event, and `read()` the whole object or array that the last event started,
+ * moving past its end. Going over the records of a large array that way holds
+ * only one of them at a time:
+ *
+ *     var events = jsonEvents("records.json");
+ *     events.next();  // "array"
+ *     while (events.next() == "object") process(events.read());
+ *
+ * The interpreter that created the reader is charged an allocation for each
+ * string, object and array built, and for each of their members.
+ */
+class JsonReader implements LoxNativeObject {
+    private static final int MAX_DEPTH = 512;
+
+    private final CharSource in;
+    private final Interpreter interpreter;
+    private final StringBuilder text = new StringBuilder();  // Reused for strings and numbers
+
+    // The state of the events
+    private char[] containers = new char[16];  // `{` or `[`, outermost first
+    private int[] counts = new int[16];  // Of the members read in each container
+    private int depth = 0;
+    private boolean started = false;
+    private boolean afterKey = false;
+    private String event;
+    private Object current;
+
+    private int nesting = 0;  // Of the values being built
+
+    JsonReader(CharSource in, Interpreter interpreter) {
+        this.in = in;
+        this.interpreter = interpreter;
+    }
+
+    // Reads the document, which must be a single value
+    Object readDocument() {
+        try {
+            Object value = readValue();
+            skipWhitespace();
+            if (in.peek() != CharSource.END)
+                throw error("Expect end of document");
+            return value;
+        } finally {
+            in.close();
+        }
+    }
+
+
+    // Events
+
+    String next() {
+        skipWhitespace();
+        if (depth > 0) {
+            int top = depth - 1;
+            if (containers[top] == '{' && !afterKey) {
+                if (in.peek() == '}') {
+                    in.read();
+                    depth--;
+                    return event("endObject", null);
+                }
+                if (counts[top]++ > 0)
+                    separator();
+                String key = readString();
+                skipWhitespace();
+                expect(':');
+                afterKey = true;
+                return event("key", key);
+            }
+            if (containers[top] == '[') {
+                if (in.peek() == ']') {
+                    in.read();
+                    depth--;
+                    return event("endArray", null);
+                }
+                if (counts[top]++ > 0)
+                    separator();
+            }
+            afterKey = false;
+        } else if (started) {
+            if (in.peek() != CharSource.END)
+                throw error("Expect end of document");
+            in.close();
+            return event(null, null);
+        }
+
+        started = true;
+        skipWhitespace();
+        int c = in.peek();
+        if (c == '{' || c == '[') {
+            in.read();
+            push((char)c);
+            return event(c == '{' ? "object" : "array", null);
+        }
+        return event("value", readScalar());
+    }
+
+    // The object or array the last event started, read to its end, or the key or value of it
+    Object read() {
+        if ("object".equals(event) || "array".equals(event)) {
+            depth--;
+            event = "value";
+            current = containers[depth] == '{' ? readObject() : readArray();
+        }
+        return current;
+    }
+
+    private String event(String name, Object value) {
+        event = name;
+        current = value;
+        return name;
+    }
+
+    private void push(char container) {
+        if (depth == MAX_DEPTH)
+            throw error("Too deeply nested");
+        if (depth == containers.length) {
+            containers = Arrays.copyOf(containers, depth * 2);
+            counts = Arrays.copyOf(counts, depth * 2);
+        }
+        containers[depth] = container;
+        counts[depth++] = 0;
+    }
+
+    private void separator() {
+        expect(',');
+        skipWhitespace();
+    }
+
+
+    // Values
+
+    private Object readValue() {
+        skipWhitespace();
+        switch (in.peek()) {
+            case '{':
+                in.read();
+                return readObject();
+            case '[':
+                in.read();
+                return readArray();
+            default:
+                return readScalar();
+        }
+    }
+
+    // Called once the `{` has been consumed
+    private LoxMap readObject() {
+        enter();
+        interpreter.allocate();
+        LoxMap map = new LoxMap();
+        skipWhitespace();
+        if (in.peek() == '}') {
+            in.read();
+        } else {
+            do {
+                skipWhitespace();
+                String key = readString();
+                skipWhitespace();
+                expect(':');
+                if (map.put(key, readValue()))
+                    interpreter.allocate();
+                skipWhitespace();
+            } while (match(','));
+            expect('}');
+        }
+        nesting--;
+        return map;
+    }
+
+    // Called once the `[` has been consumed
+    private LoxList readArray() {
+        enter();
+        interpreter.allocate();
+        LoxList list = new LoxList();
+        skipWhitespace();
+        if (in.peek() == ']') {
+            in.read();
+        } else {
+            do {
+                list.add(readValue());
+                interpreter.allocate();
+                skipWhitespace();
+            } while (match(','));
+            expect(']');
+        }
+        nesting--;
+        return list;
+    }
+
+    private void enter() {
+        if (++nesting + depth > MAX_DEPTH)
+            throw error("Too deeply nested");
+    }
+
+    private Object readScalar() {
+        int c = in.peek();
+        switch (c) {
+            case '"':  return readString();
+            case 't':  return literal("true", true);
+            case 'f':  return literal("false", false);
+            case 'n':  return literal("null", null);
+        }
+        if (c == '-' || (c >= '0' && c <= '9'))
+            return readNumber();
+        throw error(c == CharSource.END ? "Expect a value" : "Unexpected character '" + (char)c + "'");
+    }
+
+    private Object literal(String word, Object value) {
+        for (int i = 0; i < word.length(); ++i)
+            if (in.read() != word.charAt(i))
+                throw error("Expect '" + word + "'");
+        return value;
+    }
+
+    private double readNumber() {
+        text.setLength(0);
+        for (int c = in.peek(); c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E' ||
+                (c >= '0' && c <= '9'); c = in.peek())
+            text.append((char)in.read());
+        try {
+            return Double.parseDouble(text.toString());
+        } catch (NumberFormatException error) {
+            throw error("Invalid number '" + text + "'");
+        }
+    }
+
+    private String readString() {
+        if (in.read() != '"')
+            throw error("Expect a string");
+        interpreter.allocate();
+
+        // Most strings have no escapes and lie within the buffer
+        int start = in.position;
+        for (int i = start; i < in.limit; ++i) {
+            char c = in.buffer[i];
+            if (c == '"') {
+                in.position = i + 1;
+                return new String(in.buffer, start, i - start);
+            }
+            if (c == '\\' || c == '\n')  break;
+        }
+
+        text.setLength(0);
+        while (true) {
+            int c = in.read();
+            if (c == '"')  return text.toString();
+            if (c == CharSource.END || c == '\n')
+                throw error("Unterminated string");
+            if (c == '\\')
+                c = escape();
+            text.append((char)c);
+        }
+    }
+
+    private int escape() {
+        int c = in.read();
+        switch (c) {
+            case '"': case '\\': case '/':  return c;
+            case 'b':  return '\b';
+            case 'f':  return '\f';
+            case 'n':  return '\n';
+            case 'r':  return '\r';
+            case 't':  return '\t';
+            case 'u': {
+                int code = 0;
+                for (int i = 0; i < 4; ++i) {
+                    int digit = Character.digit(in.read(), 16);
+                    if (digit < 0)
+                        throw error("Invalid unicode escape");
+                    code = code * 16 + digit;
+                }
+                return code;
+            }
+        }
+        throw error("Invalid escape");
+    }
+
+
+    // Utils
+
+    private void skipWhitespace() {
+        for (int c = in.peek(); c == ' ' || c == '\n' || c == '\r' || c == '\t'; c = in.peek())
+            in.read();
+    }
+
+    private boolean match(char expected) {
+        if (in.peek() != expected)  return false;
+        in.read();
+        return true;
+    }
+
+    private void expect(char expected) {
+        if (!match(expected))
+            throw error("Expect '" + expected + "'");
+    }
+
+    private NativeError error(String message) {
+        in.close();
+        return new NativeError(message + " in JSON at line " + in.line + ".");
+    }
+
+
+    // Methods
+
+    @Override
+    public Object invoke(Interpreter interpreter, Token name, List<Object> arguments) {
+        switch (name.lexeme) {
+            case "next":
+                LoxNativeObject.checkArity(0, arguments);
+                return next();
+            case "value":
+                LoxNativeObject.checkArity(0, arguments);
+                return current;
+            case "read":
+                LoxNativeObject.checkArity(0, arguments);
+                return read();
+            case "close":
+                LoxNativeObject.checkArity(0, arguments);
+                in.close();
+                return null;
+        }
+        return LoxNativeObject.super.invoke(interpreter, name, arguments);
+    }
+
+    @Override
+    public Object get(Token name) {
+        switch (name.lexeme) {
+            case "next": case "value": case "read": case "close":
+                return LoxNativeObject.method(this, name, 0);
+        }
+        throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
+    }
+
+    @Override
+    public String toString() {
+        return "<json events>";
+    }
+}
@@ -0,0 +1,64 @@
+package com.craftinginterpreters.lox;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * The lines of a UTF-8 text file, created by `lines(path)`, read one at a time
+ * so that files of any size can be gone over. The file is closed once the last
+ * line has been read, or when the `for-in` loop reading it ends.
+ */
+class LineIterator implements LoxIterator {
+    private final BufferedReader reader;
+    private final Interpreter interpreter;  // Charged for the lines
+    private String line;  // Read ahead, `null` past the last line
+
+    LineIterator(Path path, Interpreter interpreter) {
+        this.interpreter = interpreter;
+        try {
+            this.reader = Files.newBufferedReader(path, StandardCharsets.UTF_8);
+        } catch (IOException error) {
+            throw new NativeError("Can't read file '" + path + "'.");
+        }
+        advance();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return line != null;
+    }
+
+    @Override
+    public Object next() {
+        if (line == null)
+            throw new NativeError("No more lines in the file.");
+        String current = line;
+        interpreter.allocate();
+        advance();
+        return current;
+    }
+
+    private void advance() {
+        try {
+            line = reader.readLine();
+        } catch (IOException error) {
+            close();
+            throw new NativeError("Can't read file: " + error.getMessage());
+        }
+        if (line == null)
+            close();
+    }
+
+    @Override
+    public void close() {
+        line = null;
+        try {
+            reader.close();
+        } catch (IOException error) {
+            // Nothing is lost, the file was only read
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.craftinginterpreters.lox;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the UTF-8 lines of a stream, like standard input, that may only be
+ * read once and may block between lines. The bytes go through a channel into
+ * a single buffer, which holds the unread part of what was received and only
+ * grows for a line longer than itself, so memory stays bounded by the longest
+ * line however long the stream runs.
+ *
+ * Before waiting for more input, the reader flushes the output of the
+ * interpreter reading, so that in a pipeline the results of the lines read so
+ * far go out while the stream is idle.
+ */
+class LineReader {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final FileInputStream in;
+    private final FileChannel channel;
+    private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).flip();  // Unread bytes
+    private boolean ended = false;
+
+    LineReader(FileInputStream in) {
+        this.in = in;
+        this.channel = in.getChannel();
+    }
+
+    // Returns `null` at the end of the stream
+    synchronized String readLine(Interpreter interpreter) {
+        int scanned = 0;  // From `buffer.position()`, bytes known not to be line breaks
+        while (true) {
+            int start = buffer.position();
+            for (int i = start + scanned; i < buffer.limit(); ++i)
+                if (buffer.get(i) == '\n')  return take(i, i + 1);
+
+            scanned = buffer.limit() - start;
+            if (ended)
+                return buffer.hasRemaining() ? take(buffer.limit(), buffer.limit()) : null;
+            receive(interpreter);
+        }
+    }
+
+    // Like `BufferedReader.readLine`, without the line break
+    private String take(int end, int next) {
+        int start = buffer.position();
+        if (end > start && buffer.get(end - 1) == '\r')  end--;
+        String line = new String(buffer.array(), start, end - start, StandardCharsets.UTF_8);
+        buffer.position(next);
+        return line;
+    }
+
+    private void receive(Interpreter interpreter) {
+        buffer.compact();
+        if (!buffer.hasRemaining()) {
+            // A line longer than the buffer
+            ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+            buffer = larger.put(buffer.flip());
+        }
+
+        try {
+            if (in.available() == 0)
+                interpreter.out.flush();
+            interpreter.beforeBlocking();
+            try {
+                if (channel.read(buffer) < 0)
+                    ended = true;
+            } finally {
+                interpreter.afterBlocking();
+            }
+        } catch (IOException error) {
+            throw new NativeError("Can't read input: " + error.getMessage());
+        } finally {
+            buffer.flip();
+        }
+    }
+}
@@ -1,21 +1,21 @@
 package com.craftinginterpreters.lox;
 
-import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.nio.Buffer;
+import java.io.PrintStream;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 
 public class Lox {
 
-    private static final Interpreter interpreter = new Interpreter();
-    static boolean hadError = false;
-    static boolean hadRuntimeError = false;
-
     public static void main(String[] args) throws IOException {
         if (args.length > 1) {
             System.out.println("Usage: jlox [script]");
@@ -28,72 +28,150 @@ public class Lox {
     }
 
     private static void runFile(String path) throws IOException {
-        byte[] bytes = Files.readAllBytes(Paths.get(path));
-        run(new String(bytes, Charset.defaultCharset()));    // UTF-8
-
-        // Indicate an error in the exit code.
-        if (hadError)  System.exit(65);
-        if (hadRuntimeError)  System.exit(70);
-    }
-
-    private static void runPrompt() throws IOException {
-        InputStreamReader input = new InputStreamReader(System.in);
-        BufferedReader reader = new BufferedReader(input);
-
-        // read, evaluate, print and loop (REPL)
-        while (true) {
-            System.out.print("> ");
-            String line = reader.readLine();
-            if (line == null)
-                break;
-            run(line);
-            hadError = false;
+        String source = readSource(path);
+
+        // `-Dlox.cache=<dir>` keeps resolved programs on disk to skip the front end next time
+        String cacheDirectory = System.getProperty("lox.cache");
+        LoxEngine engine = cacheDirectory == null
+                ? new LoxEngine() : new LoxEngine(Paths.get(cacheDirectory));
+        defineNatives(engine);
+        // `-Dlox.memoize=pure` caches the results of the functions found to be pure
+        engine.memoizePureFunctions("pure".equals(System.getProperty("lox.memoize")));
+        // Scripts run from a file can read standard input, see `StdinNatives`
+        engine.defineStdinNatives();
+
+        // `-Dlox.runs=<n>` runs the script n times in pooled contexts, as a host would
+        Integer runs = Integer.getInteger("lox.runs");
+        if (runs != null) {
+            runPooled(engine, source, runs);
+            return;
         }
-    }
 
-    private static void run(String source) {
-        Scanner scanner = new Scanner(source);
-        List<Token> tokens = scanner.scanTokens();
-
-        Parser parser = new Parser(tokens);
-        List<Stmt> statements = parser.parse();
+        // `-Dlox.pipe=true` runs the script as a stage of a pipeline, its output buffered
+        PrintStream out = System.out;
+        if (Boolean.getBoolean("lox.pipe"))
+            out = new PrintStream(new BufferedSink(new FileOutputStream(FileDescriptor.out),
+                    1 << 16, 10), false, System.out.charset());
+        LoxContext context = engine.newContext(out, System.err);
+
+        // `-Dlox.profile=<prefix>` samples the Lox calls every `-Dlox.profile.interval`
+        // milliseconds, into `<prefix>.collapsed` for flame graphs and `<prefix>.txt`
+        String profile = System.getProperty("lox.profile");
+        LoxProfiler profiler = null;
+        if (profile != null) {
+            profiler = new LoxProfiler(Duration.ofMillis(Long.getLong("lox.profile.interval", 1)));
+            profiler.attach(context.interpreter);
+            profiler.start();
+        }
 
-        // Stop if there was a syntax error.
-        if (hadError)  return;
+        // `-Dlox.prelude=<file>` runs a script of shared declarations first
+        String prelude = System.getProperty("lox.prelude");
+        if (prelude == null || context.runPrelude(readSource(prelude)))
+            context.run(source);
+        out.flush();
 
-        Resolver resolver = new Resolver(interpreter);
-        resolver.resolve(statements);
+        if (profiler != null) {
+            profiler.stop();
+            profiler.writeCollapsed(Paths.get(profile + ".collapsed"));
+            profiler.writeTable(Paths.get(profile + ".txt"));
+        }
 
-        // Stop if there was a resolution error.
-        if (hadError)  return;
+        // Indicate an error in the exit code.
+        if (context.hadError())  System.exit(65);
+        if (context.hadRuntimeError())  System.exit(70);
+    }
 
-        interpreter.interpret(statements);
+    // Every run gets the globals as the prelude left them, whatever the runs before did
+    private static void runPooled(LoxEngine engine, String source, int runs) throws IOException {
+        String prelude = System.getProperty("lox.prelude");
+        LoxContextPool pool = null;
+        try {
+            pool = engine.newContextPool(prelude == null ? "" : readSource(prelude));
+        } catch (IllegalArgumentException error) {
+            System.err.println(error.getMessage());
+            System.exit(65);
+        }
+        Program program = engine.compile(source);
+        if (program == null)  System.exit(65);
+
+        // `-Dlox.carriers=<c>` runs them all at once on a `LoxScheduler`, with a quantum
+        // of `-Dlox.quantum` milliseconds, printing the output of each in turn at the end
+        Integer carriers = Integer.getInteger("lox.carriers");
+        if (carriers != null) {
+            runScheduled(pool, program, runs, carriers);
+            return;
+        }
 
+        for (int i = 0; i < runs; ++i) {
+            LoxContext context = pool.acquire(System.out, System.err);
+            boolean succeeded = context.run(program);
+            pool.release(context);
+            if (!succeeded)  System.exit(70);
+        }
     }
 
-    // Error handling is vital!
-    // Separate the code that GENERATES the errors from the code that REPORTS them.
+    private static void runScheduled(LoxContextPool pool, Program program, int runs, int carriers) {
+        LoxScheduler scheduler = new LoxScheduler(carriers,
+                Duration.ofMillis(Long.getLong("lox.quantum", 10)));
+        List<ByteArrayOutputStream> outputs = new ArrayList<>();
+        List<LoxContext> contexts = new ArrayList<>();
+        List<CompletableFuture<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < runs; ++i) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            PrintStream out = new PrintStream(output, true, System.out.charset());
+            LoxContext context = pool.acquire(out, out);  // Errors in their place in the output
+            outputs.add(output);
+            contexts.add(context);
+            results.add(scheduler.submit(context, program));
+        }
 
-    private static void report(int line, String where, String message) {
-        // Remember to tell the user the exact position of the error
-        System.err.println("[line " + line + "] Error" + where + ": " + message);
-        hadError = true;
+        boolean succeeded = true;
+        for (int i = 0; i < runs; ++i) {
+            succeeded &= results.get(i).join();
+            System.out.print(outputs.get(i).toString(System.out.charset()));
+            pool.release(contexts.get(i));
+        }
+        if (!succeeded)  System.exit(70);
     }
 
-    static void error(int line, String message) {
-        report(line, "", message);
+    // `-Dlox.natives=<class>,...` loads native modules, see `LoxNative`
+    private static void defineNatives(LoxEngine engine) {
+        String modules = System.getProperty("lox.natives");
+        if (modules == null)  return;
+
+        for (String module : modules.split(",")) {
+            try {
+                engine.defineNatives(Class.forName(module.trim()));
+            } catch (ClassNotFoundException error) {
+                System.err.println("Cannot find native module " + module.trim() + ".");
+                System.exit(64);
+            }
+        }
     }
 
-    static void error(Token token, String message) {
-        if (token.type == TokenType.EOF)
-            report(token.line, " at end", message);
-        else
-            report(token.line, " at '" + token.lexeme + "'", message);
+    private static String readSource(String path) throws IOException {
+        byte[] bytes = Files.readAllBytes(Paths.get(path));
+        return new String(bytes, Charset.defaultCharset());    // UTF-8
     }
 
-    static void runtimeError(RuntimeError error) {
-        System.err.println(error.getMessage() + "\n[line " + error.token.line + "]");
-        hadRuntimeError = true;
+    private static void runPrompt() {
+        LoxEngine engine = new LoxEngine();
+        defineNatives(engine);
+        engine.memoizePureFunctions("pure".equals(System.getProperty("lox.memoize")));
+        engine.defineStdinNatives();
+        ReplSession session = new ReplSession(engine, System.out, System.err);
+        // The prompt reads through the natives' reader, so that a statement
+        // calling `readLine()` gets the next line typed and the prompt the one after
+        LineReader input = StdinNatives.reader();
+
+        // read, evaluate, print and loop (REPL)
+        while (true) {
+            System.out.print(session.isContinuing() ? ". " : "> ");
+            String line = session.readLine(input);
+            if (line == null)
+                break;
+            session.accept(line);
+        }
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,64 @@
+package com.craftinginterpreters.lox;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+
+/**
+ * A bounded channel created by `channel(n)`. `send` blocks while `n` values are
+ * waiting, and `receive` blocks until there is one; with `n` = 0 each `send`
+ * waits for a `receive`. Everything a task did before a `send` is visible to
+ * the task that receives the value. The queue's nodes are allocated as values
+ * are sent, so a large `n` costs nothing up front.
+ */
+class LoxChannel implements LoxNativeObject {
+    // Blocking queues can't hold `null`, so `nil` is sent as this
+    private static final Object NIL = new Object();
+
+    private final BlockingQueue<Object> queue;
+    private final LoxCallable send;
+    private final LoxCallable receive;
+
+    LoxChannel(int capacity) {
+        this.queue = capacity == 0 ? new SynchronousQueue<>() : new LinkedBlockingQueue<>(capacity);
+        this.send = new NativeFunction(1, (interpreter, arguments) -> {
+            Object value = arguments.get(0);
+            interpreter.beforeBlocking();
+            try {
+                queue.put(value == null ? NIL : value);
+            } catch (InterruptedException error) {
+                Thread.currentThread().interrupt();
+                throw new NativeError("Interrupted while sending.");
+            } finally {
+                interpreter.afterBlocking();
+            }
+            return null;
+        });
+        this.receive = new NativeFunction(0, (interpreter, arguments) -> {
+            interpreter.beforeBlocking();
+            try {
+                Object value = queue.take();
+                return value == NIL ? null : value;
+            } catch (InterruptedException error) {
+                Thread.currentThread().interrupt();
+                throw new NativeError("Interrupted while receiving.");
+            } finally {
+                interpreter.afterBlocking();
+            }
+        });
+    }
+
+    @Override
+    public Object get(Token name) {
+        switch (name.lexeme) {
+            case "send":  return send;
+            case "receive":  return receive;
+        }
+        throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
+    }
+
+    @Override
+    public String toString() {
+        return "<channel>";
+    }
+}
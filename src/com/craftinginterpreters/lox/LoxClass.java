@@ -6,11 +6,13 @@ import java.util.Map;
 
 public class LoxClass implements LoxCallable {
     final String name;
+    final int line;  // Of the declaration, for `LoxProfiler`
     LoxClass superclass;
-    private final Map<String, LoxFunction> methods;
+    final Map<String, LoxFunction> methods;
 
-    LoxClass(String name, LoxClass superclass, Map<String, LoxFunction> methods) {
+    LoxClass(String name, int line, LoxClass superclass, Map<String, LoxFunction> methods) {
         this.name = name;
+        this.line = line;
         this.superclass = superclass;
         this.methods = methods;
     }
@@ -34,10 +36,24 @@ public class LoxClass implements LoxCallable {
 
     @Override
     public Object call(Interpreter interpreter, List<Object> arguments) {
+        ShadowStack stack = interpreter.shadowStack;
+        if (stack == null)  return instantiate(interpreter, arguments);
+
+        stack.push(this);
+        try {
+            return instantiate(interpreter, arguments);
+        } finally {
+            stack.pop();
+        }
+    }
+
+    private Object instantiate(Interpreter interpreter, List<Object> arguments) {
         LoxInstance instance = new LoxInstance(this);
         LoxFunction initializer = findMethod("init");
-        if (initializer != null)
+        if (initializer != null) {
+            interpreter.allocate();
             initializer.bind(instance).call(interpreter, arguments);
+        }
 
         return instance;
     }
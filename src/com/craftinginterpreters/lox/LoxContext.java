@@ -0,0 +1,110 @@
+package com.craftinginterpreters.lox;
+
+import java.io.IOException;
+import java.io.PrintStream;
+
+/**
+ * A single Lox execution context, created by `LoxEngine.newContext`. Its globals
+ * persist from one `run` to the next; `print` writes to its output sink and all
+ * errors go to its error sink.
+ */
+public class LoxContext {
+    private final LoxEngine engine;
+    LoxContextPool pool;  // The pool this context belongs to, if any
+    final ErrorReporter reporter;
+    final Interpreter interpreter;
+    private HeapCheckpoint checkpoint;  // Of the objects at the last `mark`
+
+    LoxContext(LoxEngine engine, PrintStream out, PrintStream err) {
+        this.engine = engine;
+        this.reporter = new ErrorReporter(err);
+        this.interpreter = new Interpreter(reporter, out, engine.natives, engine.globalSlots);
+        this.interpreter.memoizePure = engine.memoizePure;
+    }
+
+    /**
+     * Compiles and runs `source`, returning `false` if it had a syntax,
+     * resolution or runtime error.
+     */
+    public boolean run(String source) {
+        reporter.reset();
+        Program program = engine.compile(source, reporter);
+        if (program == null)  return false;
+
+        interpreter.setBudget(ExecutionBudget.UNLIMITED);
+        interpreter.interpret(program);
+        return !reporter.hadRuntimeError;
+    }
+
+    /**
+     * Runs a program compiled by `LoxEngine.compile`, returning `false` if it
+     * had a runtime error.
+     */
+    public boolean run(Program program) {
+        return run(program, ExecutionBudget.UNLIMITED);
+    }
+
+    /**
+     * Runs a program within `budget`, returning `false` if it had a runtime
+     * error, going over the budget included.
+     */
+    public boolean run(Program program, ExecutionBudget budget) {
+        reporter.reset();
+        interpreter.setBudget(budget);
+        interpreter.interpret(program);
+        return !reporter.hadRuntimeError;
+    }
+
+    /**
+     * Runs a prelude of shared declarations. With a cache, the globals it defines
+     * are restored from a snapshot instead of running it again, and its output,
+     * if any, is not replayed.
+     */
+    public boolean runPrelude(String source) {
+        reporter.reset();
+        ProgramCache cache = engine.cache;
+        if (cache != null && cache.loadSnapshot(source, interpreter))
+            return true;
+
+        if (!run(source))  return false;
+        if (cache != null) {
+            try {
+                cache.storeSnapshot(source, interpreter);
+            } catch (IOException error) {
+                reporter.warning("Could not snapshot the prelude: " + error.getMessage());
+            }
+        }
+        return true;
+    }
+
+    // Makes the current globals, and the objects they lead to, the ones `reset` goes back to
+    void mark() {
+        checkpoint = new HeapCheckpoint(interpreter);
+        interpreter.globals.mark();
+    }
+
+    void reset() {
+        interpreter.globals.reset();
+        if (checkpoint != null)
+            checkpoint.restore();
+        reporter.reset();
+    }
+
+    void redirect(PrintStream out, PrintStream err) {
+        interpreter.out = out;
+        reporter.err = err;
+    }
+
+    public boolean hadError() {
+        return reporter.hadError;
+    }
+
+    public boolean hadRuntimeError() {
+        return reporter.hadRuntimeError;
+    }
+
+    // Whether the last run was stopped for going over its `ExecutionBudget`
+    public boolean exceededBudget() {
+        return reporter.exceededBudget;
+    }
+}
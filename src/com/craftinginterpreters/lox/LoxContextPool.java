@@ -0,0 +1,71 @@
+package com.craftinginterpreters.lox;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Deque;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+/**
+ * Hands out contexts that have already run a prelude, for hosts that run many
+ * short scripts. A released context gets its globals reset to what the prelude
+ * left behind, which only touches the globals that were written, and then
+ * waits for the next `acquire`. It keeps its natives and its global cells, so
+ * reusing it is much cheaper than starting over.
+ *
+ * The instances, lists, maps and captured variables that the prelude created
+ * are put back as the prelude left them too (see `HeapCheckpoint`), so a script
+ * that changes one doesn't change it for the scripts after it. A prelude whose
+ * globals lead to something else that holds state, like a channel, can't be
+ * pooled. Tasks spawned by a script must be joined before it is released.
+ */
+public class LoxContextPool {
+    private static final PrintStream DISCARD = new PrintStream(OutputStream.nullOutputStream());
+
+    private final LoxEngine engine;
+    private final String prelude;
+    private final PrintStream err;  // For the errors of the prelude
+    private final Deque<LoxContext> idle = new ConcurrentLinkedDeque<>();
+    private final Set<LoxContext> acquired = ConcurrentHashMap.newKeySet();
+
+    LoxContextPool(LoxEngine engine, String prelude, PrintStream err) {
+        this.engine = engine;
+        this.prelude = prelude;
+        this.err = err;
+        idle.push(create());  // Report a broken prelude right away
+    }
+
+    /**
+     * Returns an idle context, or a new one if there is none, with its output
+     * and errors going to `out` and `err` until it is released.
+     */
+    public LoxContext acquire(PrintStream out, PrintStream err) {
+        LoxContext context = idle.poll();  // The most recently used one has the warmest caches
+        if (context == null)
+            context = create();
+        acquired.add(context);
+        context.redirect(out, err);
+        return context;
+    }
+
+    public void release(LoxContext context) {
+        if (context.pool != this)
+            throw new IllegalArgumentException("The context does not belong to this pool.");
+        if (!acquired.remove(context))
+            throw new IllegalStateException("The context has already been released.");
+        context.reset();
+        context.redirect(DISCARD, DISCARD);
+        idle.push(context);
+    }
+
+    private LoxContext create() {
+        LoxContext context = engine.newContext(DISCARD, err);
+        if (!context.runPrelude(prelude))
+            throw new IllegalArgumentException("The prelude failed.");
+        context.mark();
+        context.redirect(DISCARD, DISCARD);
+        context.pool = this;
+        return context;
+    }
+}
@@ -0,0 +1,137 @@
+package com.craftinginterpreters.lox;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * The entry point for embedding Lox. An engine compiles scripts into immutable
+ * `Program`s, holds what all its contexts share (the optional on-disk program
+ * cache and the natives) and hands out contexts, each with an interpreter, an output
+ * sink and an error sink of its own.
+ *
+ * An engine may be used from any number of threads. A context may only be used
+ * by one thread at a time, but any number of contexts can run in parallel, and
+ * they can all run the same program.
+ */
+public class LoxEngine {
+    final ProgramCache cache;
+    final NativeRegistry natives = NativeRegistry.withCore();
+    final GlobalEnvironment.Slots globalSlots = new GlobalEnvironment.Slots();
+    volatile boolean memoizePure = false;
+
+    public LoxEngine() {
+        this.cache = null;
+    }
+
+    // Programs compiled by this engine are cached in `cacheDirectory`
+    public LoxEngine(Path cacheDirectory) {
+        this.cache = new ProgramCache(cacheDirectory, globalSlots);
+    }
+
+    /**
+     * Defines the static method `method` as the global function `name` in the
+     * contexts created from now on. Lox numbers are passed as `double`, `int`
+     * or `long` parameters, booleans as `boolean` and strings as `String`; any
+     * other value needs an `Object` parameter or one of its own type. The method
+     * is bound once, here, so calling it involves no reflection.
+     */
+    public void defineNative(String name, Method method) {
+        natives.define(name, method);
+    }
+
+    /**
+     * Defines every static method of `module` annotated with `@LoxNative`, as
+     * `defineNative` does.
+     */
+    public void defineNatives(Class<?> module) {
+        natives.defineModule(module);
+    }
+
+    /**
+     * Defines `readLine()` and `stdin()`, which read the standard input of the
+     * process (see `StdinNatives`), in the contexts created from now on. The
+     * command line defines them for scripts and for the REPL; a host whose
+     * standard input isn't meant for its scripts, like a server, shouldn't.
+     */
+    public void defineStdinNatives() {
+        natives.defineModule(StdinNatives.class);
+    }
+
+    /**
+     * Makes the functions that the resolver finds pure (see `Resolver.inferPurity`)
+     * cache their results, like `memoize(fn)` does, in the contexts created
+     * from now on. This assumes that functions called by name are not
+     * redefined by later scripts of a context.
+     */
+    public void memoizePureFunctions(boolean enabled) {
+        memoizePure = enabled;
+    }
+
+    public LoxContext newContext() {
+        return newContext(System.out, System.err);
+    }
+
+    public LoxContext newContext(PrintStream out, PrintStream err) {
+        return new LoxContext(this, out, err);
+    }
+
+    /**
+     * Returns a pool of contexts that have all run `prelude` once, see
+     * `LoxContextPool`.
+     */
+    public LoxContextPool newContextPool(String prelude) {
+        return newContextPool(prelude, System.err);
+    }
+
+    // Like `newContextPool(prelude)`, reporting the errors of the prelude to `err`
+    public LoxContextPool newContextPool(String prelude, PrintStream err) {
+        return new LoxContextPool(this, prelude, err);
+    }
+
+    public Program compile(String source) {
+        return compile(source, System.err);
+    }
+
+    /**
+     * Compiles `source` once so that it can be run by any number of contexts.
+     * Returns `null` if it had a syntax or resolution error, reported to `err`.
+     */
+    public Program compile(String source, PrintStream err) {
+        return compile(source, new ErrorReporter(err));
+    }
+
+    Program compile(String source, ErrorReporter reporter) {
+        if (cache != null) {
+            Program program = cache.load(source);
+            if (program != null)  return program;
+        }
+
+        Scanner scanner = new Scanner(source, reporter);
+        List<Token> tokens = scanner.scanTokens();
+
+        Parser parser = new Parser(tokens, reporter);
+        List<Stmt> statements = parser.parse();
+
+        // Stop if there was a syntax error.
+        if (reporter.hadError)  return null;
+
+        Resolver resolver = new Resolver(reporter, globalSlots);
+        resolver.resolve(statements);
+
+        // Stop if there was a resolution error.
+        if (reporter.hadError)  return null;
+
+        Program program = new Program(statements);
+        if (cache != null) {
+            try {
+                cache.store(source, program);
+            } catch (IOException error) {
+                reporter.warning("Could not cache the program: " + error.getMessage());
+            }
+        }
+        return program;
+    }
+}
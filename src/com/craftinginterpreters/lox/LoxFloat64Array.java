@@ -0,0 +1,207 @@
+package com.craftinginterpreters.lox;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.util.List;
+
+/**
+ * A fixed-size array of numbers created by `Float64Array(length)`, all 0 at
+ * first, with `get(index)`, `set(index, value)`, `length()`, `fill(value)`,
+ * `copy(source)`, `sum()`, `dot(other)` and `free()` methods.
+ *
+ * The numbers are kept off the heap, in direct buffers of at most 2^27 numbers
+ * (1GB) each, so the collector neither copies nor scans them however large the
+ * array is: the heap only holds this object and one small buffer object per
+ * 1GB. `Interpreter.visitCallExpr` calls `get` and `set` directly, without an
+ * argument list. Arrays are not thread-safe, like maps.
+ *
+ * The buffers count toward `-XX:MaxDirectMemorySize`, which is the maximum
+ * heap size unless set. Java can't release a direct buffer on demand, so
+ * `free()` only drops this array's references to them, after which the array
+ * can't be used: their memory is returned once the collector finds them
+ * unreachable, as it is for an array that is simply dropped. Until then it
+ * still counts toward the limit. When a new array would go over it, the JDK
+ * runs a collection and waits for freed buffers before giving up, so freeing
+ * does make room, unless `-XX:+DisableExplicitGC` turns that collection off.
+ */
+class LoxFloat64Array implements LoxNativeObject {
+    private static final int CHUNK_BITS = 27;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    // So that the number of chunks is an int
+    static final long MAX_LENGTH = (long)Integer.MAX_VALUE << CHUNK_BITS;
+    // Methods that go over the whole array take a step every so many numbers
+    private static final int STRIDE = 1 << 16;
+
+    private final long length;
+    private DoubleBuffer[] chunks;  // `null` once freed
+
+    LoxFloat64Array(long length) {
+        this.length = length;
+        try {
+            this.chunks = new DoubleBuffer[(int)((length + CHUNK_SIZE - 1) >>> CHUNK_BITS)];
+            for (int i = 0; i < chunks.length; ++i) {
+                int size = (int)Math.min(CHUNK_SIZE, length - ((long)i << CHUNK_BITS));
+                chunks[i] = ByteBuffer.allocateDirect(size * Double.BYTES)
+                        .order(ByteOrder.nativeOrder()).asDoubleBuffer();
+            }
+        } catch (OutOfMemoryError error) {
+            // The chunks allocated so far are returned once collected
+            throw new NativeError("Not enough memory for an array of " + length + " numbers.");
+        }
+    }
+
+    long length() {
+        return length;
+    }
+
+    double get(long index) {
+        return chunks()[(int)(index >>> CHUNK_BITS)].get((int)index & (CHUNK_SIZE - 1));
+    }
+
+    void set(long index, double value) {
+        chunks()[(int)(index >>> CHUNK_BITS)].put((int)index & (CHUNK_SIZE - 1), value);
+    }
+
+    void fill(Interpreter interpreter, double value) {
+        for (DoubleBuffer chunk : chunks()) {
+            for (int start = 0; start < chunk.limit(); start += STRIDE) {
+                interpreter.step();
+                int end = Math.min(start + STRIDE, chunk.limit());
+                for (int i = start; i < end; ++i)
+                    chunk.put(i, value);
+            }
+        }
+    }
+
+    // Copies `source` to the start of this array
+    void copy(Interpreter interpreter, LoxFloat64Array source) {
+        if (source.length > length)
+            throw new NativeError("Source array is longer than the target.");
+        DoubleBuffer[] from = source.chunks(), to = chunks();
+        for (int c = 0; c < from.length; ++c) {
+            for (int start = 0; start < from[c].limit(); start += STRIDE) {
+                interpreter.step();
+                int count = Math.min(STRIDE, from[c].limit() - start);
+                to[c].put(start, from[c], start, count);
+            }
+        }
+    }
+
+    double sum(Interpreter interpreter) {
+        double sum = 0;
+        for (DoubleBuffer chunk : chunks()) {
+            for (int start = 0; start < chunk.limit(); start += STRIDE) {
+                interpreter.step();
+                int end = Math.min(start + STRIDE, chunk.limit());
+                for (int i = start; i < end; ++i)
+                    sum += chunk.get(i);
+            }
+        }
+        return sum;
+    }
+
+    double dot(Interpreter interpreter, LoxFloat64Array other) {
+        if (other.length != length)
+            throw new NativeError("Arrays must have the same length.");
+        DoubleBuffer[] left = chunks(), right = other.chunks();
+        double sum = 0;
+        for (int c = 0; c < left.length; ++c) {
+            for (int start = 0; start < left[c].limit(); start += STRIDE) {
+                interpreter.step();
+                int end = Math.min(start + STRIDE, left[c].limit());
+                for (int i = start; i < end; ++i)
+                    sum += left[c].get(i) * right[c].get(i);
+            }
+        }
+        return sum;
+    }
+
+    // Returns the memory only once the buffers are collected, see above
+    void free() {
+        chunks = null;
+    }
+
+    private DoubleBuffer[] chunks() {
+        DoubleBuffer[] chunks = this.chunks;
+        if (chunks == null)
+            throw new NativeError("The array has been freed.");
+        return chunks;
+    }
+
+
+    // Methods
+
+    @Override
+    public Object invoke(Interpreter interpreter, Token name, List<Object> arguments) {
+        switch (name.lexeme) {
+            case "get":
+                LoxNativeObject.checkArity(1, arguments);
+                return get(index(arguments.get(0)));
+            case "set":
+                LoxNativeObject.checkArity(2, arguments);
+                set(index(arguments.get(0)), number(arguments.get(1)));
+                return null;
+            case "length":
+                LoxNativeObject.checkArity(0, arguments);
+                return (double)length;
+            case "fill":
+                LoxNativeObject.checkArity(1, arguments);
+                fill(interpreter, number(arguments.get(0)));
+                return null;
+            case "copy":
+                LoxNativeObject.checkArity(1, arguments);
+                copy(interpreter, array(arguments.get(0)));
+                return null;
+            case "sum":
+                LoxNativeObject.checkArity(0, arguments);
+                return sum(interpreter);
+            case "dot":
+                LoxNativeObject.checkArity(1, arguments);
+                return dot(interpreter, array(arguments.get(0)));
+            case "free":
+                LoxNativeObject.checkArity(0, arguments);
+                free();
+                return null;
+        }
+        return LoxNativeObject.super.invoke(interpreter, name, arguments);
+    }
+
+    @Override
+    public Object get(Token name) {
+        switch (name.lexeme) {
+            case "get": case "fill": case "copy": case "dot":
+                return LoxNativeObject.method(this, name, 1);
+            case "set":
+                return LoxNativeObject.method(this, name, 2);
+            case "length": case "sum": case "free":
+                return LoxNativeObject.method(this, name, 0);
+        }
+        throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
+    }
+
+    long index(Object index) {
+        if (!(index instanceof Double) || (double)index != Math.floor((double)index))
+            throw new NativeError("Array index must be an integer.");
+        if ((double)index < 0 || (double)index >= length)
+            throw new NativeError("Array index out of range.");
+        return (long)(double)index;
+    }
+
+    static double number(Object value) {
+        if (!(value instanceof Double))
+            throw new NativeError("Array elements must be numbers.");
+        return (double)value;
+    }
+
+    private static LoxFloat64Array array(Object value) {
+        if (!(value instanceof LoxFloat64Array))
+            throw new NativeError("Expect a Float64Array.");
+        return (LoxFloat64Array)value;
+    }
+
+    @Override
+    public String toString() {
+        return "<Float64Array " + length + ">";
+    }
+}
@@ -1,13 +1,13 @@
 package com.craftinginterpreters.lox;
 
-import java.security.spec.EncodedKeySpec;
 import java.util.List;
 
 class LoxFunction implements LoxCallable {
-    private final Stmt.Function declaration;
-    private final Environment closure;
-    private final boolean isInitializer;
+    final Stmt.Function declaration;
+    final Environment closure;
+    final boolean isInitializer;
     final boolean isStatic;
+    private volatile MemoizedFunction memoized;  // Created on the first memoized call
 
     LoxFunction(Stmt.Function declaration, Environment closure,
                 boolean isInitializer, boolean isStatic) {
@@ -30,6 +30,36 @@ class LoxFunction implements LoxCallable {
 
     @Override
     public Object call(Interpreter interpreter, List<Object> arguments) {
+        ShadowStack stack = interpreter.shadowStack;
+        if (stack == null)  return invoke(interpreter, arguments);
+
+        stack.push(declaration);
+        try {
+            return invoke(interpreter, arguments);
+        } finally {
+            stack.pop();
+        }
+    }
+
+    private Object invoke(Interpreter interpreter, List<Object> arguments) {
+        if (declaration.pure && interpreter.memoizePure)
+            return memoized().call(interpreter, arguments);
+        return execute(interpreter, arguments);
+    }
+
+    MemoizedFunction memoized() {
+        MemoizedFunction memoized = this.memoized;
+        if (memoized == null) {
+            synchronized (this) {
+                if (this.memoized == null)
+                    this.memoized = new MemoizedFunction(new NativeFunction(arity(), this::execute));
+                memoized = this.memoized;
+            }
+        }
+        return memoized;
+    }
+
+    private Object execute(Interpreter interpreter, List<Object> arguments) {
         Environment environment = new Environment(closure);
 
         for (int i = 0; i < declaration.params.size(); ++i)
@@ -53,39 +83,3 @@ class LoxFunction implements LoxCallable {
         return "<fn " + declaration.name.lexeme + ">";
     }
 }
-
-class LoxLambda implements LoxCallable {
-    private final Expr.Lambda lambda;
-    private final Environment closure;
-
-    LoxLambda(Expr.Lambda lambda, Environment closure) {
-        this.lambda = lambda;
-        this.closure = closure;
-    }
-
-    @Override
-    public int arity() {
-        return lambda.params.size();
-    }
-
-    @Override
-    public Object call(Interpreter interpreter, List<Object> arguments) {
-        Environment environment = new Environment(closure);
-
-        for (int i = 0; i < lambda.params.size(); ++i)
-            environment.define(lambda.params.get(i).lexeme, arguments.get(i));
-
-        try {
-            interpreter.executeBlock(lambda.body, environment);
-        } catch (Return returnValue) {
-            return returnValue.value;
-        }
-        return null;
-    }
-
-    @Override
-    public String toString() {
-        return "<fn lambda>";
-    }
-
-}
\ No newline at end of file
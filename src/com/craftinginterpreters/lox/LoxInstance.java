@@ -1,31 +1,60 @@
 package com.craftinginterpreters.lox;
 
-import java.util.Map;
 import java.util.HashMap;
+import java.util.Map;
 
 public class LoxInstance {
-    private LoxClass klass;
+    // Stored for `nil`, so that a single lookup tells it from a missing field
+    private static final Object NIL = new Object();
+
+    final LoxClass klass;
+    // Not thread-safe, like lists and maps: tasks should hand instances over through channels
     private final Map<String, Object> fields = new HashMap<>();
 
     LoxInstance(LoxClass klass) {
         this.klass = klass;
     }
 
-    Object get(Token name) {
-        if (fields.containsKey(name.lexeme))
-            return fields.get(name.lexeme);
+    // The interpreter is charged for binding a method
+    Object get(Token name, Interpreter interpreter) {
+        Object value = fields.get(name.lexeme);
+        if (value != null)
+            return value == NIL ? null : value;
 
         LoxFunction method = klass.findMethod(name.lexeme);
-        if (method.isStatic)
-            throw new RuntimeError(name, "Only classes allow calls for static methods.");
-        if (method != null)
+        if (method != null) {
+            if (method.isStatic)
+                throw new RuntimeError(name, "Only classes allow calls for static methods.");
+            interpreter.allocate(name);
             return method.bind(this);
+        }
 
         throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
     }
 
     void set(Token name, Object value) {
-        fields.put(name.lexeme, value);
+        set(name.lexeme, value);
+    }
+
+    void set(String name, Object value) {
+        fields.put(name, value == null ? NIL : value);
+    }
+
+    // A copy of the fields, with `nil` as `null`
+    Map<String, Object> fields() {
+        Map<String, Object> copy = new HashMap<>();
+        for (Map.Entry<String, Object> field : fields.entrySet())
+            copy.put(field.getKey(), field.getValue() == NIL ? null : field.getValue());
+        return copy;
+    }
+
+    // Replaces the fields with a copy made by `fields`, if they changed
+    void restore(Map<String, Object> fields) {
+        if (this.fields.size() == fields.size() && Environment.same(this.fields, fields, NIL))
+            return;
+        this.fields.clear();
+        for (Map.Entry<String, Object> field : fields.entrySet())
+            set(field.getKey(), field.getValue());
     }
 
     @Override
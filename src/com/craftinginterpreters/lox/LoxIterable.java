@@ -0,0 +1,6 @@
+package com.craftinginterpreters.lox;
+
+// A native sequence that `for (x in ...)` can go over any number of times
+interface LoxIterable {
+    LoxIterator iterator();
+}
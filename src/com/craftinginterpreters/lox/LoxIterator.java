@@ -0,0 +1,43 @@
+package com.craftinginterpreters.lox;
+
+import java.util.List;
+
+/**
+ * A native iterator, which `for (x in ...)` reads one element at a time, as can
+ * scripts through its `hasNext()` and `next()` methods. Iterators over a
+ * resource, like the file of `lines`, release it in `close`, which a `for-in`
+ * loop calls once it ends, whether or not it went through every element.
+ */
+interface LoxIterator extends LoxNativeObject {
+    boolean hasNext();
+
+    // Throws a `NativeError` past the last element
+    Object next();
+
+    default void close() {}
+
+
+    // Methods
+
+    @Override
+    default Object invoke(Interpreter interpreter, Token name, List<Object> arguments) {
+        switch (name.lexeme) {
+            case "hasNext":
+                LoxNativeObject.checkArity(0, arguments);
+                return hasNext();
+            case "next":
+                LoxNativeObject.checkArity(0, arguments);
+                return next();
+        }
+        return LoxNativeObject.super.invoke(interpreter, name, arguments);
+    }
+
+    @Override
+    default Object get(Token name) {
+        switch (name.lexeme) {
+            case "hasNext": case "next":
+                return LoxNativeObject.method(this, name, 0);
+        }
+        throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
+    }
+}
@@ -0,0 +1,50 @@
+package com.craftinginterpreters.lox;
+
+import java.util.List;
+
+class LoxLambda implements LoxCallable {
+    final Expr.Lambda lambda;
+    final Environment closure;
+
+    LoxLambda(Expr.Lambda lambda, Environment closure) {
+        this.lambda = lambda;
+        this.closure = closure;
+    }
+
+    @Override
+    public int arity() {
+        return lambda.params.size();
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments) {
+        ShadowStack stack = interpreter.shadowStack;
+        if (stack == null)  return execute(interpreter, arguments);
+
+        stack.push(lambda);
+        try {
+            return execute(interpreter, arguments);
+        } finally {
+            stack.pop();
+        }
+    }
+
+    private Object execute(Interpreter interpreter, List<Object> arguments) {
+        Environment environment = new Environment(closure);
+
+        for (int i = 0; i < lambda.params.size(); ++i)
+            environment.define(lambda.params.get(i).lexeme, arguments.get(i));
+
+        try {
+            interpreter.executeBlock(lambda.body, environment);
+        } catch (Return returnValue) {
+            return returnValue.value;
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return "<fn lambda>";
+    }
+}
\ No newline at end of file
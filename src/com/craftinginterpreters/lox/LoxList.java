@@ -0,0 +1,241 @@
+package com.craftinginterpreters.lox;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A growable list created by `list()`, with `get(index)`, `set(index, value)`,
+ * `push(value)`, `pop()`, `length()` and `iterator()` methods.
+ *
+ * While every element is a number, they are stored unboxed in a `double[]`;
+ * the first element of another type moves them all to an `Object[]`, for good.
+ * Lists are compared element by element with `==`, like strings. They are not
+ * thread-safe: tasks should hand them over through channels.
+ *
+ * A list may contain itself, directly or not: it prints as `[...]` where it
+ * recurs and compares equal to a list of the same shape. Lists can't be map
+ * keys, since a list that changed could no longer be found.
+ */
+class LoxList implements LoxNativeObject, LoxIterable {
+    // Lists and maps being printed, and lists being hashed, by this thread
+    static final ThreadLocal<Set<Object>> PRINTING = ThreadLocal.withInitial(LoxList::identitySet);
+    private static final ThreadLocal<Set<Object>> HASHING = ThreadLocal.withInitial(LoxList::identitySet);
+    // The pairs of lists being compared by this thread, one after the other
+    private static final ThreadLocal<List<LoxList>> COMPARING = ThreadLocal.withInitial(ArrayList::new);
+
+    private double[] numbers;
+    private Object[] objects;  // `null` as long as `numbers` is used
+    private int size = 0;
+
+    LoxList() {
+        this.numbers = new double[8];
+    }
+
+    LoxList(Object[] elements) {
+        this.numbers = new double[Math.max(8, elements.length)];
+        for (Object element : elements)
+            add(element);
+    }
+
+    int size() {
+        return size;
+    }
+
+    Object get(int index) {
+        return objects != null ? objects[index] : (Object)numbers[index];
+    }
+
+    void set(int index, Object value) {
+        if (objects == null && !(value instanceof Double))
+            generalize();
+
+        if (objects != null)
+            objects[index] = value;
+        else
+            numbers[index] = (double)value;
+    }
+
+    void add(Object value) {
+        if (size == capacity())
+            grow();
+        size++;
+        set(size - 1, value);
+    }
+
+    Object removeLast() {
+        Object value = get(size - 1);
+        if (objects != null)
+            objects[size - 1] = null;  // Don't keep it alive
+        size--;
+        return value;
+    }
+
+    void clear() {
+        if (objects != null)
+            Arrays.fill(objects, 0, size, null);  // Don't keep them alive
+        size = 0;
+    }
+
+    private int capacity() {
+        return objects != null ? objects.length : numbers.length;
+    }
+
+    private void grow() {
+        int capacity = Math.max(8, capacity() * 2);
+        if (objects != null)
+            objects = Arrays.copyOf(objects, capacity);
+        else
+            numbers = Arrays.copyOf(numbers, capacity);
+    }
+
+    private void generalize() {
+        objects = new Object[numbers.length];
+        for (int i = 0; i < size; ++i)
+            objects[i] = numbers[i];
+        numbers = null;
+    }
+
+    // Sees the elements pushed while iterating
+    @Override
+    public LoxIterator iterator() {
+        return new LoxIterator() {
+            private int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            @Override
+            public Object next() {
+                if (index >= size)
+                    throw new NativeError("No more elements in the list.");
+                return LoxList.this.get(index++);
+            }
+        };
+    }
+
+
+    // Methods
+
+    // Called by `Interpreter.visitCallExpr` for `list.method(...)`, without building a function
+    @Override
+    public Object invoke(Interpreter interpreter, Token name, List<Object> arguments) {
+        switch (name.lexeme) {
+            case "get":
+                LoxNativeObject.checkArity(1, arguments);
+                return get(index(arguments.get(0)));
+            case "set":
+                LoxNativeObject.checkArity(2, arguments);
+                set(index(arguments.get(0)), arguments.get(1));
+                return null;
+            case "push":
+                LoxNativeObject.checkArity(1, arguments);
+                interpreter.allocate();
+                add(arguments.get(0));
+                return null;
+            case "pop":
+                LoxNativeObject.checkArity(0, arguments);
+                if (size == 0)
+                    throw new NativeError("Can't pop from an empty list.");
+                return removeLast();
+            case "length":
+                LoxNativeObject.checkArity(0, arguments);
+                return (double)size;
+            case "iterator":
+                LoxNativeObject.checkArity(0, arguments);
+                return iterator();
+        }
+        return LoxNativeObject.super.invoke(interpreter, name, arguments);
+    }
+
+    @Override
+    public Object get(Token name) {
+        switch (name.lexeme) {
+            case "get": case "push":
+                return LoxNativeObject.method(this, name, 1);
+            case "set":
+                return LoxNativeObject.method(this, name, 2);
+            case "pop": case "length": case "iterator":
+                return LoxNativeObject.method(this, name, 0);
+        }
+        throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
+    }
+
+    private int index(Object index) {
+        if (!(index instanceof Double) || (double)index != Math.floor((double)index))
+            throw new NativeError("List index must be an integer.");
+        if ((double)index < 0 || (double)index >= size)
+            throw new NativeError("List index out of range.");
+        return (int)(double)index;
+    }
+
+
+    // Utils
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other)  return true;
+        if (!(other instanceof LoxList))  return false;
+
+        LoxList list = (LoxList)other;
+        if (size != list.size)  return false;
+
+        List<LoxList> comparing = COMPARING.get();
+        for (int i = 0; i < comparing.size(); i += 2)
+            if (comparing.get(i) == this && comparing.get(i + 1) == list)
+                return true;  // A cycle, equal so far
+        comparing.add(this);
+        comparing.add(list);
+        try {
+            for (int i = 0; i < size; ++i)
+                if (!Interpreter.isEqual(get(i), list.get(i)))
+                    return false;
+            return true;
+        } finally {
+            comparing.remove(comparing.size() - 1);
+            comparing.remove(comparing.size() - 1);
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        Set<Object> hashing = HASHING.get();
+        if (!hashing.add(this))
+            throw new NativeError("A list that contains itself can't be hashed.");
+        try {
+            int hash = 1;
+            for (int i = 0; i < size; ++i) {
+                Object element = get(i);
+                hash = 31 * hash + (element == null ? 0 : element.hashCode());
+            }
+            return hash;
+        } finally {
+            hashing.remove(this);
+        }
+    }
+
+    @Override
+    public String toString() {
+        Set<Object> printing = PRINTING.get();
+        if (!printing.add(this))  return "[...]";
+        try {
+            StringBuilder text = new StringBuilder("[");
+            for (int i = 0; i < size; ++i) {
+                if (i > 0)  text.append(", ");
+                text.append(Interpreter.stringify(get(i)));
+            }
+            return text.append("]").toString();
+        } finally {
+            printing.remove(this);
+        }
+    }
+
+    static Set<Object> identitySet() {
+        return Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+}
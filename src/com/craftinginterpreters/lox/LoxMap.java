@@ -0,0 +1,247 @@
+package com.craftinginterpreters.lox;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A hash map created by `map()`, with `get(key)`, `put(key, value)`,
+ * `has(key)`, `remove(key)`, `size()` and `keys()` methods. Any value but a
+ * list can be a key; keys are compared like `==` does. A list is compared by
+ * its elements, so it would be lost in the table once it changed. `get` and `remove` return `nil` for a
+ * missing key, and `keys` lists the keys in no particular order.
+ *
+ * The table uses open addressing with linear probing, in parallel arrays: the
+ * hash of every key is kept next to it so that a probe rarely has to compare
+ * keys, and number keys are kept unboxed, as bits in a `long[]`, with a marker
+ * in place of the key. Removal shifts the following entries back instead of
+ * leaving tombstones, so lookups never slow down after many removals.
+ * Maps are not thread-safe: tasks should hand them over through channels.
+ */
+class LoxMap implements LoxNativeObject {
+    // Markers in `keys`: an empty slot is `null`
+    private static final Object NUMBER = new Object();
+    private static final Object NIL = new Object();
+
+    private Object[] keys;
+    private long[] numbers;  // The bits of the number keys
+    private int[] hashes;
+    private Object[] values;
+    private int size = 0;
+
+    LoxMap() {
+        allocate(16);
+    }
+
+    private void allocate(int capacity) {
+        keys = new Object[capacity];
+        numbers = new long[capacity];
+        hashes = new int[capacity];
+        values = new Object[capacity];
+    }
+
+    int size() {
+        return size;
+    }
+
+    // Returns `null` for a missing key as well as for `nil`
+    Object get(Object key) {
+        int slot = find(key);
+        return slot < 0 ? null : values[slot];
+    }
+
+    boolean containsKey(Object key) {
+        return find(key) >= 0;
+    }
+
+    // Returns whether `key` is new
+    boolean put(Object key, Object value) {
+        if (key instanceof LoxList)
+            throw new NativeError("A list can't be a map key.");
+        int hash = hash(key);
+        int mask = keys.length - 1;
+        int slot = hash & mask;
+        for (; keys[slot] != null; slot = (slot + 1) & mask) {
+            if (hashes[slot] == hash && matches(slot, key)) {
+                values[slot] = value;
+                return false;
+            }
+        }
+
+        store(slot, key, hash, value);
+        if (++size * 4 > keys.length * 3)
+            grow();
+        return true;
+    }
+
+    // Returns the value that was removed, `null` if there was none
+    Object remove(Object key) {
+        int slot = find(key);
+        if (slot < 0)  return null;
+
+        Object value = values[slot];
+        int mask = keys.length - 1;
+
+        // Move back each following entry that would not be found past the gap
+        int gap = slot;
+        for (int next = (gap + 1) & mask; keys[next] != null; next = (next + 1) & mask) {
+            int home = hashes[next] & mask;
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                numbers[gap] = numbers[next];
+                hashes[gap] = hashes[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+        }
+        keys[gap] = null;
+        values[gap] = null;
+        size--;
+        return value;
+    }
+
+    void clear() {
+        Arrays.fill(keys, null);
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    LoxList keys() {
+        Object[] result = new Object[size];
+        int count = 0;
+        for (int slot = 0; slot < keys.length; ++slot)
+            if (keys[slot] != null)
+                result[count++] = key(slot);
+        return new LoxList(result);
+    }
+
+    private int find(Object key) {
+        if (key instanceof LoxList)  return -1;  // Never stored, and maybe not hashable
+        int hash = hash(key);
+        int mask = keys.length - 1;
+        for (int slot = hash & mask; keys[slot] != null; slot = (slot + 1) & mask)
+            if (hashes[slot] == hash && matches(slot, key))
+                return slot;
+        return -1;
+    }
+
+    private boolean matches(int slot, Object key) {
+        Object stored = keys[slot];
+        if (stored == NUMBER)
+            return key instanceof Double && numbers[slot] == Double.doubleToLongBits((double)key);
+        if (stored == NIL)
+            return key == null;
+        return stored.equals(key);
+    }
+
+    private void store(int slot, Object key, int hash, Object value) {
+        if (key instanceof Double) {
+            keys[slot] = NUMBER;
+            numbers[slot] = Double.doubleToLongBits((double)key);
+        } else {
+            keys[slot] = key == null ? NIL : key;
+        }
+        hashes[slot] = hash;
+        values[slot] = value;
+    }
+
+    private Object key(int slot) {
+        Object key = keys[slot];
+        if (key == NUMBER)  return Double.longBitsToDouble(numbers[slot]);
+        return key == NIL ? null : key;
+    }
+
+    private void grow() {
+        Object[] oldKeys = keys;
+        long[] oldNumbers = numbers;
+        int[] oldHashes = hashes;
+        Object[] oldValues = values;
+        allocate(oldKeys.length * 2);
+
+        int mask = keys.length - 1;
+        for (int old = 0; old < oldKeys.length; ++old) {
+            if (oldKeys[old] == null)  continue;
+
+            int slot = oldHashes[old] & mask;
+            while (keys[slot] != null)
+                slot = (slot + 1) & mask;
+            keys[slot] = oldKeys[old];
+            numbers[slot] = oldNumbers[old];
+            hashes[slot] = oldHashes[old];
+            values[slot] = oldValues[old];
+        }
+    }
+
+    // Spread so that keys in sequence, like small integers, don't cluster
+    private static int hash(Object key) {
+        long bits;
+        if (key instanceof Double)
+            bits = Double.doubleToLongBits((double)key);
+        else
+            bits = key == null ? 0 : key.hashCode();  // `String` caches its hash
+        bits *= 0x9E3779B97F4A7C15L;
+        return (int)(bits ^ (bits >>> 32));
+    }
+
+
+    // Methods
+
+    @Override
+    public Object invoke(Interpreter interpreter, Token name, List<Object> arguments) {
+        switch (name.lexeme) {
+            case "get":
+                LoxNativeObject.checkArity(1, arguments);
+                return get(arguments.get(0));
+            case "put":
+                LoxNativeObject.checkArity(2, arguments);
+                if (put(arguments.get(0), arguments.get(1)))
+                    interpreter.allocate();
+                return null;
+            case "has":
+                LoxNativeObject.checkArity(1, arguments);
+                return containsKey(arguments.get(0));
+            case "remove":
+                LoxNativeObject.checkArity(1, arguments);
+                return remove(arguments.get(0));
+            case "size":
+                LoxNativeObject.checkArity(0, arguments);
+                return (double)size;
+            case "keys":
+                LoxNativeObject.checkArity(0, arguments);
+                interpreter.allocate(size + 1L);
+                return keys();
+        }
+        return LoxNativeObject.super.invoke(interpreter, name, arguments);
+    }
+
+    @Override
+    public Object get(Token name) {
+        switch (name.lexeme) {
+            case "get": case "has": case "remove":
+                return LoxNativeObject.method(this, name, 1);
+            case "put":
+                return LoxNativeObject.method(this, name, 2);
+            case "size": case "keys":
+                return LoxNativeObject.method(this, name, 0);
+        }
+        throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
+    }
+
+    @Override
+    public String toString() {
+        Set<Object> printing = LoxList.PRINTING.get();
+        if (!printing.add(this))  return "{...}";
+        try {
+            StringBuilder text = new StringBuilder("{");
+            for (int slot = 0; slot < keys.length; ++slot) {
+                if (keys[slot] == null)  continue;
+                if (text.length() > 1)  text.append(", ");
+                text.append(Interpreter.stringify(key(slot))).append(": ")
+                    .append(Interpreter.stringify(values[slot]));
+            }
+            return text.append("}").toString();
+        } finally {
+            printing.remove(this);
+        }
+    }
+}
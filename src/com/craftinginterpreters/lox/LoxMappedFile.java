@@ -0,0 +1,240 @@
+package com.craftinginterpreters.lox;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A UTF-8 text file mapped into memory, created by `mapFile(path)`, with
+ * `size()`, `lines()`, `grep(text)` and `count(text)` methods. `lines()` goes
+ * over the lines of the file and `grep(text)` over those containing `text`,
+ * both as iterators; `count(text)` returns the number of lines containing
+ * `text`.
+ *
+ * The file is read through the mapping, so its pages are cached by the system
+ * and not by the heap, which holds the same few objects whatever the size of
+ * the file. Line breaks, and `text` as UTF-8 bytes, are searched for 8 bytes at
+ * a time: a string is only decoded, from a buffer the iterator reuses, for a
+ * line that the script reads. A mapping can't be larger than 2GB, so bigger
+ * files are mapped in regions, each cut after its last line break so that no
+ * line spans two of them. The file is closed once it is mapped, and the
+ * mapping is released when the value is no longer reachable.
+ */
+class LoxMappedFile implements LoxNativeObject {
+    private static final int REGION_SIZE = 1 << 30;
+
+    private final Path path;
+    private final long size;
+    private final List<MappedByteBuffer> regions = new ArrayList<>();
+
+    LoxMappedFile(Path path) {
+        this(path, REGION_SIZE);
+    }
+
+    LoxMappedFile(Path path, int regionSize) {
+        this.path = path;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            this.size = channel.size();
+            for (long start = 0; start < size; ) {
+                long length = Math.min(regionSize, size - start);
+                MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+                region.order(ByteOrder.LITTLE_ENDIAN);
+                if (start + length < size) {
+                    int end = lastLineEnd(region);
+                    if (end < 0)
+                        throw new NativeError("Line too long in file '" + path + "'.");
+                    region.limit(end);
+                }
+                regions.add(region);
+                start += region.limit();
+            }
+        } catch (IOException error) {
+            throw new NativeError("Can't map file '" + path + "'.");
+        }
+    }
+
+    long size() {
+        return size;
+    }
+
+    // The lines containing `text`, or every line when `text` is `null`
+    LoxIterator lines(String text) {
+        return new Lines(text == null ? null : text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    long count(String text) {
+        byte[] needle = text.getBytes(StandardCharsets.UTF_8);
+        long count = 0;
+        for (MappedByteBuffer region : regions) {
+            for (int position = 0; ; ) {
+                int found = indexOf(region, needle, position, region.limit());
+                if (found < 0)  break;
+                count++;
+                position = lineEnd(region, found + needle.length);
+            }
+        }
+        return count;
+    }
+
+    private class Lines implements LoxIterator {
+        private final byte[] needle;  // `null` to go over every line
+        private byte[] buffer = new byte[256];  // Reused to decode each line
+
+        private int region = 0;
+        private int position = 0;  // Of the next line to look at in `region`
+        private int start = -1, end;  // The next line, once found
+
+        Lines(byte[] needle) {
+            this.needle = needle;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return start >= 0 || find();
+        }
+
+        @Override
+        public Object next() {
+            if (!hasNext())
+                throw new NativeError("No more lines in the file.");
+            String line = decode(regions.get(region), start, end);
+            start = -1;
+            return line;
+        }
+
+        // Moves to the next line to return, across regions
+        private boolean find() {
+            for (; region < regions.size(); region++, position = 0) {
+                ByteBuffer bytes = regions.get(region);
+                int limit = bytes.limit();
+                if (position >= limit)  continue;
+
+                if (needle == null) {
+                    start = position;
+                } else {
+                    int found = indexOf(bytes, needle, position, limit);
+                    if (found < 0)  continue;
+                    start = lineStart(bytes, found);
+                    position = found + needle.length;
+                }
+                end = position = lineEnd(bytes, position);
+                return true;
+            }
+            return false;
+        }
+
+        private String decode(ByteBuffer bytes, int start, int end) {
+            // Like `BufferedReader.readLine`, without the line break
+            if (end > start && bytes.get(end - 1) == '\n')  end--;
+            if (end > start && bytes.get(end - 1) == '\r')  end--;
+
+            int length = end - start;
+            if (buffer.length < length)
+                buffer = new byte[Math.max(length, buffer.length * 2)];
+            bytes.get(start, buffer, 0, length);
+            return new String(buffer, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+
+
+    // Methods
+
+    @Override
+    public Object invoke(Interpreter interpreter, Token name, List<Object> arguments) {
+        switch (name.lexeme) {
+            case "size":
+                LoxNativeObject.checkArity(0, arguments);
+                return (double)size;
+            case "lines":
+                LoxNativeObject.checkArity(0, arguments);
+                return lines(null);
+            case "grep":
+                LoxNativeObject.checkArity(1, arguments);
+                return lines(text(arguments.get(0)));
+            case "count":
+                LoxNativeObject.checkArity(1, arguments);
+                return (double)count(text(arguments.get(0)));
+        }
+        return LoxNativeObject.super.invoke(interpreter, name, arguments);
+    }
+
+    @Override
+    public Object get(Token name) {
+        switch (name.lexeme) {
+            case "size": case "lines":
+                return LoxNativeObject.method(this, name, 0);
+            case "grep": case "count":
+                return LoxNativeObject.method(this, name, 1);
+        }
+        throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
+    }
+
+    private static String text(Object text) {
+        if (!(text instanceof String) || ((String)text).isEmpty() ||
+                ((String)text).indexOf('\n') >= 0)
+            throw new NativeError("Expect a non-empty string without line breaks.");
+        return (String)text;
+    }
+
+    @Override
+    public String toString() {
+        return "<file " + path + ">";
+    }
+
+
+    // Utils
+
+    // The first occurrence of `needle` in `[from, to)` of `bytes`, or -1
+    private static int indexOf(ByteBuffer bytes, byte[] needle, int from, int to) {
+        int last = to - needle.length;
+        search:
+        for (int i = from; i <= last; ++i) {
+            i = indexOf(bytes, needle[0], i, last + 1);
+            if (i < 0)  break;
+            for (int j = 1; j < needle.length; ++j)
+                if (bytes.get(i + j) != needle[j])  continue search;
+            return i;
+        }
+        return -1;
+    }
+
+    // Reads 8 bytes at a time, `bytes` being little-endian
+    private static int indexOf(ByteBuffer bytes, byte target, int from, int to) {
+        long pattern = (target & 0xFFL) * 0x0101010101010101L;
+        int i = from;
+        for (; i + 8 <= to; i += 8) {
+            long word = bytes.getLong(i) ^ pattern;  // Zero in the bytes equal to `target`
+            long zeros = (word - 0x0101010101010101L) & ~word & 0x8080808080808080L;
+            if (zeros != 0)
+                return i + (Long.numberOfTrailingZeros(zeros) >>> 3);
+        }
+        for (; i < to; ++i)
+            if (bytes.get(i) == target)  return i;
+        return -1;
+    }
+
+    // Past the line break ending the line at `position`, or the end of `bytes`
+    private static int lineEnd(ByteBuffer bytes, int position) {
+        int found = indexOf(bytes, (byte)'\n', position, bytes.limit());
+        return found < 0 ? bytes.limit() : found + 1;
+    }
+    private static int lineStart(ByteBuffer bytes, int position) {
+        while (position > 0 && bytes.get(position - 1) != '\n')
+            position--;
+        return position;
+    }
+
+    // Past the last line break of `bytes`, or -1 if there is none
+    private static int lastLineEnd(ByteBuffer bytes) {
+        for (int i = bytes.limit() - 1; i >= 0; --i)
+            if (bytes.get(i) == '\n')  return i + 1;
+        return -1;
+    }
+}
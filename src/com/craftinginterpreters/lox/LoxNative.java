@@ -0,0 +1,17 @@
+package com.craftinginterpreters.lox;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a static method of a native module as a global function, see
+ * `LoxEngine.defineNatives`. The function is named after the method unless
+ * another name is given, e.g. `@LoxNative("sqrt")`.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface LoxNative {
+    String value() default "";
+}
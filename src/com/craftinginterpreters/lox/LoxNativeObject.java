@@ -0,0 +1,43 @@
+package com.craftinginterpreters.lox;
+
+import java.util.List;
+
+// A value implemented in Java whose properties, usually methods, are read with `.`
+interface LoxNativeObject {
+    Object get(Token name);
+
+    /**
+     * Calls the method `name`, for `object.name(...)`. Objects with many small
+     * methods override it to dispatch on the name directly, instead of returning
+     * a function from `get` only for it to be called once.
+     */
+    default Object invoke(Interpreter interpreter, Token name, List<Object> arguments) {
+        Object method = get(name);
+        if (!(method instanceof LoxCallable))
+            throw new RuntimeError(name, "Can only call functions and classes");
+
+        LoxCallable function = (LoxCallable)method;
+        checkArity(function.arity(), arguments);
+        return function.call(interpreter, arguments);
+    }
+
+    // A method read without being called, e.g. `var push = list.push;`
+    static LoxCallable method(LoxNativeObject object, Token name, int arity) {
+        return new NativeFunction(arity, (interpreter, arguments) ->
+                object.invoke(interpreter, name, arguments));
+    }
+
+    // Checks an argument that natives call back, like the `fn` of `parallelMap(list, fn)`
+    static LoxCallable function(Object value, int arity) {
+        if (!(value instanceof LoxCallable) || ((LoxCallable)value).arity() != arity)
+            throw new NativeError("Expect a function of " + arity +
+                    (arity == 1 ? " argument." : " arguments."));
+        return (LoxCallable)value;
+    }
+
+    static void checkArity(int arity, List<Object> arguments) {
+        if (arguments.size() != arity)
+            throw new NativeError("Expected " + arity + " arguments but got " +
+                    arguments.size() + ".");
+    }
+}
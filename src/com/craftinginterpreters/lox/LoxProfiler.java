@@ -0,0 +1,184 @@
+package com.craftinginterpreters.lox;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A sampling profiler of Lox code. Each interpreter it is attached to, and the
+ * interpreters of the tasks they spawn, keep a `ShadowStack` of their Lox calls,
+ * which a thread of the profiler samples every `interval`. The samples are
+ * counted by stack of call sites (a function or method declaration, a lambda
+ * or a class), so they can be written as collapsed stacks, the input of flame
+ * graph tools, one line per stack with the frames outermost first:
+ *
+ *     <script>;main:20;fib:1;fib:1 1234
+ *
+ * and as a table of the self time (spent in the function itself, natives
+ * included) and the total time (with the functions it calls) of each function,
+ * with the line it is declared at.
+ *
+ * Times are wall-clock: a task waiting on a channel counts as in the function
+ * that waits. The cost while profiling is a push and a pop per call, and for
+ * the sampler, which runs on its own thread, a copy of each stack per sample.
+ */
+class LoxProfiler {
+    private static final String SCRIPT = "<script>";
+
+    private final long interval;  // Nanoseconds
+    private final Set<ShadowStack> stacks = Collections.newSetFromMap(new WeakHashMap<>());
+    private final Map<List<Object>, Integer> samples = new HashMap<>();  // Accessed by the sampler only
+    private Thread sampler;
+
+    LoxProfiler(Duration interval) {
+        this.interval = interval.toNanos();
+    }
+
+    // Profiles the calls of `interpreter`, under a frame for the script itself
+    void attach(Interpreter interpreter) {
+        ShadowStack stack = newStack();
+        stack.push(SCRIPT);
+        interpreter.shadowStack = stack;
+    }
+
+    // For the interpreter of a task, which inherits the profiler of its parent
+    ShadowStack newStack() {
+        ShadowStack stack = new ShadowStack(this);
+        synchronized (stacks) {
+            stacks.add(stack);
+        }
+        return stack;
+    }
+
+    void start() {
+        sampler = new Thread(this::sample, "lox-profiler");
+        sampler.setDaemon(true);
+        sampler.start();
+    }
+
+    void stop() {
+        if (sampler == null)  return;
+        sampler.interrupt();
+        try {
+            sampler.join();
+        } catch (InterruptedException error) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void sample() {
+        while (!Thread.currentThread().isInterrupted()) {
+            LockSupport.parkNanos(interval);
+
+            List<ShadowStack> current;
+            synchronized (stacks) {
+                current = new ArrayList<>(stacks);
+            }
+            for (ShadowStack stack : current) {
+                Object[] frames = stack.snapshot();
+                if (frames.length == 0)  continue;  // A task that isn't running
+
+                List<Object> sites = new ArrayList<>(frames.length);
+                for (Object frame : frames)
+                    if (frame != null)  sites.add(frame);
+                samples.merge(sites, 1, Integer::sum);
+            }
+        }
+    }
+
+    private static String name(Object site) {
+        if (site instanceof Stmt.Function)  return ((Stmt.Function)site).name.lexeme;
+        if (site instanceof Expr.Lambda)  return "lambda";
+        if (site instanceof LoxClass)  return ((LoxClass)site).name;
+        return site.toString();
+    }
+
+    // The line of the declaration, 0 if it has none
+    private static int line(Object site) {
+        if (site instanceof Stmt.Function)  return ((Stmt.Function)site).name.line;
+        if (site instanceof Expr.Lambda)  return ((Expr.Lambda)site).keyword.line;
+        if (site instanceof LoxClass)  return ((LoxClass)site).line;
+        return 0;
+    }
+
+    private static String label(Object site) {
+        int line = line(site);
+        return line == 0 ? name(site) : name(site) + ":" + line;
+    }
+
+
+    // Output, once stopped
+
+    int sampleCount() {
+        int total = 0;
+        for (int count : samples.values())
+            total += count;
+        return total;
+    }
+
+    void writeCollapsed(Path path) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(path, StandardCharsets.UTF_8))) {
+            for (Map.Entry<List<Object>, Integer> sample : samples.entrySet()) {
+                StringBuilder line = new StringBuilder();
+                for (Object site : sample.getKey()) {
+                    if (line.length() > 0)  line.append(';');
+                    line.append(label(site));
+                }
+                out.println(line.append(' ').append(sample.getValue()));
+            }
+        }
+    }
+
+    void writeTable(Path path) throws IOException {
+        Map<Object, int[]> counts = new IdentityHashMap<>();  // Self and total samples by site
+        int total = 0;
+        for (Map.Entry<List<Object>, Integer> sample : samples.entrySet()) {
+            List<Object> sites = sample.getKey();
+            int count = sample.getValue();
+            total += count;
+            counts.computeIfAbsent(sites.get(sites.size() - 1), site -> new int[2])[0] += count;
+
+            // Once per stack, however many times recursion put a site in it
+            Set<Object> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (Object site : sites)
+                if (seen.add(site))
+                    counts.computeIfAbsent(site, key -> new int[2])[1] += count;
+        }
+
+        List<Map.Entry<Object, int[]>> rows = new ArrayList<>(counts.entrySet());
+        rows.sort((a, b) -> a.getValue()[0] != b.getValue()[0]
+                ? Integer.compare(b.getValue()[0], a.getValue()[0])
+                : Integer.compare(b.getValue()[1], a.getValue()[1]));
+
+        double millis = interval / 1e6;
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(path, StandardCharsets.UTF_8))) {
+            out.printf("%d samples every %s ms%n%n", total, format(millis));
+            out.printf("%12s %7s %12s %7s  %-24s %s%n",
+                    "self ms", "self %", "total ms", "total %", "function", "line");
+            for (Map.Entry<Object, int[]> row : rows) {
+                int[] count = row.getValue();
+                int line = line(row.getKey());
+                out.printf("%12.1f %6.1f%% %12.1f %6.1f%%  %-24s %s%n",
+                        count[0] * millis, 100.0 * count[0] / Math.max(1, total),
+                        count[1] * millis, 100.0 * count[1] / Math.max(1, total),
+                        name(row.getKey()), line == 0 ? "-" : Integer.toString(line));
+            }
+        }
+    }
+
+    private static String format(double number) {
+        return number == Math.rint(number) ? Long.toString((long)number) : Double.toString(number);
+    }
+}
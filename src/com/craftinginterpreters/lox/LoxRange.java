@@ -0,0 +1,60 @@
+package com.craftinginterpreters.lox;
+
+import java.util.List;
+
+/**
+ * The numbers from `start` up to, but not including, `end`, created by
+ * `range(start, end)`. They are never stored: a `for-in` loop over a range
+ * runs as a counted loop, and `iterator()` counts as it goes.
+ */
+class LoxRange implements LoxNativeObject, LoxIterable {
+    final double start, end;
+
+    LoxRange(double start, double end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    @Override
+    public LoxIterator iterator() {
+        return new LoxIterator() {
+            private double current = start;
+
+            @Override
+            public boolean hasNext() {
+                return current < end;
+            }
+
+            @Override
+            public Object next() {
+                if (current >= end)
+                    throw new NativeError("No more numbers in the range.");
+                return current++;
+            }
+        };
+    }
+
+
+    // Methods
+
+    @Override
+    public Object invoke(Interpreter interpreter, Token name, List<Object> arguments) {
+        if (name.lexeme.equals("iterator")) {
+            LoxNativeObject.checkArity(0, arguments);
+            return iterator();
+        }
+        return LoxNativeObject.super.invoke(interpreter, name, arguments);
+    }
+
+    @Override
+    public Object get(Token name) {
+        if (name.lexeme.equals("iterator"))
+            return LoxNativeObject.method(this, name, 0);
+        throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
+    }
+
+    @Override
+    public String toString() {
+        return "range(" + Interpreter.stringify(start) + ", " + Interpreter.stringify(end) + ")";
+    }
+}
@@ -0,0 +1,139 @@
+package com.craftinginterpreters.lox;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Time-slices many long-running scripts over a few carriers. Every script
+ * submitted gets a virtual thread of its own, but only as many of them as
+ * there are carriers may have a turn at once; the others wait in a FIFO queue.
+ * Once a script has used up its quantum, it checks at the next safepoint (a
+ * loop back-edge or a call) whether others are waiting and, if so, goes to the
+ * back of the queue. A script blocked on a channel or a `join` gives its turn
+ * up until it is woken.
+ *
+ * Turns are handed over explicitly rather than through a semaphore, because
+ * virtual threads are never preempted: a thread that has just been started may
+ * not get a carrier while the scripts that have one keep running, and so could
+ * never queue up. Scripts are therefore started only once it is their turn,
+ * and a script at the end of its quantum steps aside for any that has been
+ * started but has not begun yet.
+ *
+ * Tasks spawned by a scheduled script run outside of the scheduler, as plain
+ * virtual threads.
+ */
+public class LoxScheduler {
+    private final int carriers;
+    private final long quantum;
+
+    // Guarded by `this`
+    private final Deque<TimeSlice> waiting = new ArrayDeque<>();
+    private int running = 0;   // Scripts that have a turn
+    private int starting = 0;  // Scripts that have a turn but have not begun
+
+    public LoxScheduler(int carriers, Duration quantum) {
+        this.carriers = carriers;
+        this.quantum = quantum.toNanos();
+    }
+
+    /**
+     * Runs `program` in `context`, which must not be used elsewhere until the
+     * returned future completes with the result of `LoxContext.run`.
+     */
+    public CompletableFuture<Boolean> submit(LoxContext context, Program program) {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        TimeSlice slice = new TimeSlice();
+        slice.thread = Thread.ofVirtual().name("lox-scheduled").unstarted(() -> {
+            slice.begin();
+            context.interpreter.timeSlice = slice;
+            try {
+                result.complete(context.run(program));
+            } catch (Throwable error) {
+                result.completeExceptionally(error);
+            } finally {
+                context.interpreter.timeSlice = null;
+                slice.pause();
+            }
+        });
+
+        synchronized (this) {
+            waiting.add(slice);
+            fill();
+        }
+        return result;
+    }
+
+    // Gives the free turns to the first waiting scripts
+    private void fill() {
+        while (running < carriers && !waiting.isEmpty()) {
+            running++;
+            waiting.poll().wake();
+        }
+    }
+
+    // The turn of one script, only used by the script's own thread
+    class TimeSlice {
+        private Thread thread;
+        private final Semaphore turn = new Semaphore(0);
+        private long start;
+
+        private void begin() {
+            synchronized (LoxScheduler.this) {
+                starting--;
+                fill();
+            }
+            start = System.nanoTime();
+        }
+
+        // Called at safepoints, see `Interpreter.step`
+        void safepoint() {
+            if (System.nanoTime() - start < quantum)  return;
+
+            synchronized (LoxScheduler.this) {
+                if (waiting.isEmpty() && starting == 0) {
+                    start = System.nanoTime();
+                    return;
+                }
+                running--;
+                waiting.add(this);
+                if (starting == 0)
+                    fill();
+                // Otherwise the turn is taken back once the starting scripts begin
+            }
+            await();
+        }
+
+        void pause() {
+            synchronized (LoxScheduler.this) {
+                running--;
+                fill();
+            }
+        }
+
+        void resume() {
+            synchronized (LoxScheduler.this) {
+                waiting.add(this);
+                fill();
+            }
+            await();
+        }
+
+        // Called with the scheduler locked, once this script has been given a turn
+        private void wake() {
+            if (thread.getState() == Thread.State.NEW) {
+                starting++;
+                thread.start();
+            } else {
+                turn.release();
+            }
+        }
+
+        private void await() {
+            turn.acquireUninterruptibly();
+            start = System.nanoTime();
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.craftinginterpreters.lox;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A lazy stream over a sequence, created by `stream(sequence)`. `map(fn)`,
+ * `filter(fn)` and `take(n)` return a new stream with one more stage and do
+ * nothing else; `reduce(init, fn)`, `find(fn)`, `forEach(fn)` and `toList()`
+ * run the whole pipeline.
+ *
+ * The stages are fused: a terminal operation chains one sink per stage, from
+ * the last stage back to the first, and the source pushes its elements through
+ * that chain one at a time. No stage stores the elements, and a sink that needs
+ * no more (`take` once it has enough, `find` once it has a match) stops the
+ * source. Like the sequences of `for-in`, ranges are counted and lists indexed
+ * without an iterator. A stream can be run again if its source can, which
+ * `lines(path)` cannot.
+ */
+class LoxStream implements LoxNativeObject {
+    // Takes one element, returns `false` once it needs no more
+    private interface Sink {
+        boolean accept(Object element);
+    }
+
+    // Builds the sink of a stage, in front of the sink of the next one
+    private interface Stage {
+        Sink wrap(Interpreter interpreter, Sink downstream);
+    }
+
+    private final Object source;
+    private final LoxStream upstream;  // `null` for the stream over `source` itself
+    private final Stage stage;
+
+    LoxStream(Object source) {
+        this(source, null, null);
+    }
+
+    private LoxStream(Object source, LoxStream upstream, Stage stage) {
+        this.source = source;
+        this.upstream = upstream;
+        this.stage = stage;
+    }
+
+    private LoxStream then(Stage stage) {
+        return new LoxStream(source, this, stage);
+    }
+
+
+    // Stages
+
+    private LoxStream map(LoxCallable function) {
+        return then((interpreter, downstream) -> element ->
+                downstream.accept(function.call(interpreter, Arrays.asList(element))));
+    }
+
+    private LoxStream filter(LoxCallable predicate) {
+        return then((interpreter, downstream) -> element ->
+                !Interpreter.isTruthy(predicate.call(interpreter, Arrays.asList(element))) ||
+                        downstream.accept(element));
+    }
+
+    private LoxStream take(int count) {
+        return then((interpreter, downstream) -> new Sink() {
+            private int left = count;
+
+            @Override
+            public boolean accept(Object element) {
+                if (left <= 0)  return false;
+                left--;
+                return downstream.accept(element) && left > 0;
+            }
+        });
+    }
+
+
+    // Terminal operations
+
+    private void run(Interpreter interpreter, Token token, Sink terminal) {
+        Sink sink = terminal;
+        for (LoxStream stream = this; stream.upstream != null; stream = stream.upstream)
+            sink = stream.stage.wrap(interpreter, sink);
+
+        if (source instanceof LoxRange) {
+            LoxRange range = (LoxRange)source;
+            for (double i = range.start; i < range.end; ++i) {
+                interpreter.step(token);
+                if (!sink.accept(i))  return;
+            }
+        } else if (source instanceof LoxList) {
+            LoxList list = (LoxList)source;
+            for (int i = 0; i < list.size(); ++i) {
+                interpreter.step(token);
+                if (!sink.accept(list.get(i)))  return;
+            }
+        } else {
+            LoxIterator elements = interpreter.iterator(source, token);
+            try {
+                while (elements.hasNext()) {
+                    interpreter.step(token);
+                    if (!sink.accept(elements.next()))  return;
+                }
+            } finally {
+                elements.close();
+            }
+        }
+    }
+
+    private Object reduce(Interpreter interpreter, Token token, Object init,
+                          LoxCallable function) {
+        Object[] accumulator = { init };
+        run(interpreter, token, element -> {
+            accumulator[0] = function.call(interpreter, Arrays.asList(accumulator[0], element));
+            return true;
+        });
+        return accumulator[0];
+    }
+
+    // The first element `predicate` holds for, `nil` if there is none
+    private Object find(Interpreter interpreter, Token token, LoxCallable predicate) {
+        Object[] found = { null };
+        run(interpreter, token, element -> {
+            if (!Interpreter.isTruthy(predicate.call(interpreter, Arrays.asList(element))))
+                return true;
+            found[0] = element;
+            return false;
+        });
+        return found[0];
+    }
+
+    private LoxList toList(Interpreter interpreter, Token token) {
+        interpreter.allocate(token);
+        LoxList list = new LoxList();
+        run(interpreter, token, element -> {
+            interpreter.allocate(token);
+            list.add(element);
+            return true;
+        });
+        return list;
+    }
+
+
+    // Methods
+
+    @Override
+    public Object invoke(Interpreter interpreter, Token name, List<Object> arguments) {
+        switch (name.lexeme) {
+            case "map":
+                LoxNativeObject.checkArity(1, arguments);
+                return map(LoxNativeObject.function(arguments.get(0), 1));
+            case "filter":
+                LoxNativeObject.checkArity(1, arguments);
+                return filter(LoxNativeObject.function(arguments.get(0), 1));
+            case "take":
+                LoxNativeObject.checkArity(1, arguments);
+                return take(count(arguments.get(0)));
+            case "reduce":
+                LoxNativeObject.checkArity(2, arguments);
+                return reduce(interpreter, name, arguments.get(0),
+                        LoxNativeObject.function(arguments.get(1), 2));
+            case "find":
+                LoxNativeObject.checkArity(1, arguments);
+                return find(interpreter, name, LoxNativeObject.function(arguments.get(0), 1));
+            case "forEach": {
+                LoxNativeObject.checkArity(1, arguments);
+                LoxCallable function = LoxNativeObject.function(arguments.get(0), 1);
+                run(interpreter, name, element -> {
+                    function.call(interpreter, Arrays.asList(element));
+                    return true;
+                });
+                return null;
+            }
+            case "toList":
+                LoxNativeObject.checkArity(0, arguments);
+                return toList(interpreter, name);
+        }
+        return LoxNativeObject.super.invoke(interpreter, name, arguments);
+    }
+
+    @Override
+    public Object get(Token name) {
+        switch (name.lexeme) {
+            case "map": case "filter": case "take": case "find": case "forEach":
+                return LoxNativeObject.method(this, name, 1);
+            case "reduce":
+                return LoxNativeObject.method(this, name, 2);
+            case "toList":
+                return LoxNativeObject.method(this, name, 0);
+        }
+        throw new RuntimeError(name, "Undefined property '" + name.lexeme + "'.");
+    }
+
+    private static int count(Object count) {
+        if (!(count instanceof Double) || (double)count < 0 ||
+                (double)count != Math.floor((double)count))
+            throw new NativeError("Expect a non-negative integer.");
+        return (int)Math.min((double)count, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public String toString() {
+        return "<stream>";
+    }
+}
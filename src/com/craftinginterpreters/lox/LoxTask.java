@@ -0,0 +1,64 @@
+package com.craftinginterpreters.lox;
+
+import java.util.List;
+
+/**
+ * A function running on a virtual thread of its own, started by `spawn(fn)`.
+ * It gets its own interpreter (and so its own call stack), sharing the globals
+ * and the output of the interpreter that spawned it. `join(task)` waits for it
+ * and returns its result, or rethrows in the joining task whatever the function
+ * threw: a runtime error, or an `Error` like a stack overflow, as if it had run
+ * there. The environments the function captured are shared from the spawn on,
+ * see `Environment`.
+ */
+class LoxTask implements Runnable {
+    private final LoxCallable function;
+    private final Interpreter interpreter;
+    private Thread thread;
+
+    // Published to the joining thread by `Thread.join`
+    private Object result;
+    private Throwable error;
+
+    private LoxTask(LoxCallable function, Interpreter parent) {
+        this.function = function;
+        this.interpreter = new Interpreter(parent);
+    }
+
+    static LoxTask spawn(LoxCallable function, Interpreter parent) {
+        Environment.shareCaptured(function);
+        LoxTask task = new LoxTask(function, parent);
+        task.thread = Thread.ofVirtual().name("lox-task").start(task);
+        return task;
+    }
+
+    @Override
+    public void run() {
+        try {
+            result = function.call(interpreter, List.of());
+        } catch (Throwable error) {
+            this.error = error;
+        }
+    }
+
+    Object join(Interpreter joining) {
+        joining.beforeBlocking();
+        try {
+            thread.join();
+        } catch (InterruptedException error) {
+            Thread.currentThread().interrupt();
+            throw new NativeError("Interrupted while joining a task.");
+        } finally {
+            joining.afterBlocking();
+        }
+
+        if (error instanceof RuntimeException)  throw (RuntimeException)error;
+        if (error != null)  throw (Error)error;
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "<task>";
+    }
+}
@@ -0,0 +1,56 @@
+package com.craftinginterpreters.lox;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A map of at most `capacity` entries, which evicts the least recently used
+ * entry to make room for a new one, so its memory is bounded by its capacity.
+ * Counts its hits, misses and evictions. Safe to share between tasks.
+ */
+class LruCache<K, V> {
+    private final LinkedHashMap<K, V> entries;
+    private long hits = 0, misses = 0, evictions = 0;
+
+    LruCache(int capacity) {
+        // In access order, so that the eldest entry is the least recently used one
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                if (size() <= capacity)  return false;
+                evictions++;
+                return true;
+            }
+        };
+    }
+
+    // Returns `null` on a miss
+    synchronized V get(K key) {
+        V value = entries.get(key);
+        if (value != null)
+            hits++;
+        else
+            misses++;
+        return value;
+    }
+
+    synchronized void put(K key, V value) {
+        entries.put(key, value);
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    synchronized long hits() {
+        return hits;
+    }
+
+    synchronized long misses() {
+        return misses;
+    }
+
+    synchronized long evictions() {
+        return evictions;
+    }
+}
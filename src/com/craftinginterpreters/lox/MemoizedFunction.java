@@ -0,0 +1,98 @@
+package com.craftinginterpreters.lox;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A function whose results are cached by argument values, compared like `==`
+ * does except for lists, which are compared by identity since an equal list
+ * may be changed afterwards, or be the result itself. The cache is an
+ * `LruCache` of `CAPACITY` entries. Created by `memoize(fn)`, and for each
+ * pure function when pure functions are memoized automatically (see
+ * `LoxEngine.memoizePureFunctions`). The function is called again for an
+ * argument that was evicted, so caching only ever saves calls: it is up to the
+ * script to memoize functions whose results depend on their arguments alone.
+ */
+class MemoizedFunction implements LoxCallable {
+    static final int CAPACITY = 4096;
+
+    // `LruCache` returns `null` for a miss, so `nil` results are cached as this
+    private static final Object NIL = new Object();
+
+    final LoxCallable function;
+    final LruCache<Object, Object> cache = new LruCache<>(CAPACITY);
+
+    MemoizedFunction(LoxCallable function) {
+        this.function = function;
+    }
+
+    @Override
+    public int arity() {
+        return function.arity();
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments) {
+        Object key = key(arguments);
+        Object result = cache.get(key);
+        if (result != null)
+            return result == NIL ? null : result;
+
+        // Not computed under a lock, so recursive and concurrent calls may both compute it
+        result = function.call(interpreter, arguments);
+        cache.put(key, result == null ? NIL : result);
+        return result;
+    }
+
+    // The arguments of each call are a list of their own, never changed afterwards
+    private static Object key(List<Object> arguments) {
+        if (arguments.size() == 1)  return key(arguments.get(0));
+
+        List<Object> key = arguments;
+        for (int i = 0; i < arguments.size(); ++i) {
+            Object argument = arguments.get(i);
+            if (!(argument instanceof LoxList))  continue;
+            if (key == arguments)  key = new ArrayList<>(arguments);
+            key.set(i, new Identity(argument));
+        }
+        return key;
+    }
+
+    private static Object key(Object argument) {
+        return argument instanceof LoxList ? new Identity(argument) : argument;
+    }
+
+    // `hits`, `misses`, `evictions` and `size`
+    LoxMap stats() {
+        LoxMap stats = new LoxMap();
+        stats.put("hits", (double)cache.hits());
+        stats.put("misses", (double)cache.misses());
+        stats.put("evictions", (double)cache.evictions());
+        stats.put("size", (double)cache.size());
+        return stats;
+    }
+
+    @Override
+    public String toString() {
+        return function.toString();
+    }
+
+    // A key equal only to keys of the same value
+    private static class Identity {
+        private final Object value;
+
+        Identity(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Identity && ((Identity)other).value == value;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(value);
+        }
+    }
+}
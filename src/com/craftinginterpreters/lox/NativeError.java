@@ -0,0 +1,13 @@
+package com.craftinginterpreters.lox;
+
+/**
+ * Thrown by natives, which don't know where they were called from. The
+ * interpreter turns it into a `RuntimeError` at the call's closing parenthesis.
+ */
+class NativeError extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    NativeError(String message) {
+        super(message);
+    }
+}
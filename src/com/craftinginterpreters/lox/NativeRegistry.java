@@ -0,0 +1,286 @@
+package com.craftinginterpreters.lox;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The natives an engine defines in the globals of each of its interpreters:
+ * Java static methods bound once, when they are registered, into functions
+ * that every interpreter shares.
+ *
+ * A method is bound through a `MethodHandle` adapted to take the interpreter
+ * and one `Object` per argument and to return an `Object`. Each parameter gets
+ * a converter that checks the Lox value and unboxes it (to a `double`, an
+ * `int`, a `boolean`, a `String` or any reference type), and the result is
+ * boxed back the same way, with `void` returning `nil`. A method whose first
+ * parameter is an `Interpreter` gets the calling one, which does not count
+ * toward the arity. Calls invoke the adapted handle exactly, so there is no
+ * reflection on the way to the method. The interpreter calls natives of up to
+ * 3 arguments through `call0` to `call3`, with the values it just evaluated,
+ * so that it doesn't build an argument list either.
+ */
+class NativeRegistry {
+    private static final MethodHandles.Lookup lookup = MethodHandles.lookup();
+    private static final MethodHandle TO_DOUBLE, TO_INT, TO_LONG, TO_BOOLEAN, TO_STRING,
+            TO_INSTANCE, FROM_NUMBER;
+
+    static {
+        try {
+            TO_DOUBLE = converter("toDouble", double.class);
+            TO_INT = converter("toInt", int.class);
+            TO_LONG = converter("toLong", long.class);
+            TO_BOOLEAN = converter("toBoolean", boolean.class);
+            TO_STRING = converter("toText", String.class);
+            TO_INSTANCE = lookup.findStatic(NativeRegistry.class, "toInstance",
+                    MethodType.methodType(Object.class, Class.class, int.class, Object.class));
+            FROM_NUMBER = lookup.findStatic(NativeRegistry.class, "fromNumber",
+                    MethodType.methodType(Object.class, Number.class));
+        } catch (ReflectiveOperationException error) {
+            throw new ExceptionInInitializerError(error);
+        }
+    }
+
+    private static MethodHandle converter(String name, Class<?> type)
+            throws ReflectiveOperationException {
+        return lookup.findStatic(NativeRegistry.class, name,
+                MethodType.methodType(type, int.class, Object.class));
+    }
+
+    private static final NativeRegistry CORE = new NativeRegistry();
+
+    static {
+        CORE.defineModule(CoreNatives.class);
+        CORE.defineModule(ParallelNatives.class);
+        CORE.defineModule(BenchNatives.class);
+        CORE.defineModule(RegexNatives.class);
+        CORE.defineModule(DataNatives.class);
+    }
+
+    private final Map<String, LoxCallable> functions = new LinkedHashMap<>();
+
+    private NativeRegistry() {}
+
+    // The core natives alone, for interpreters of their own
+    static NativeRegistry core() {
+        return CORE;
+    }
+
+    // The core natives, to which an engine adds its own
+    static NativeRegistry withCore() {
+        NativeRegistry registry = new NativeRegistry();
+        registry.functions.putAll(CORE.functions);
+        return registry;
+    }
+
+    // Defines every method of `module` annotated with `@LoxNative`
+    synchronized void defineModule(Class<?> module) {
+        for (Method method : module.getDeclaredMethods()) {
+            LoxNative annotation = method.getAnnotation(LoxNative.class);
+            if (annotation == null)  continue;
+            define(annotation.value().isEmpty() ? method.getName() : annotation.value(), method);
+        }
+    }
+
+    synchronized void define(String name, Method method) {
+        if (!Modifier.isStatic(method.getModifiers()))
+            throw new IllegalArgumentException("Native '" + name + "' must be a static method.");
+        try {
+            functions.put(name, bind(lookup.unreflect(method)));
+        } catch (IllegalAccessException error) {
+            throw new IllegalArgumentException("Native '" + name + "' is not accessible.", error);
+        }
+    }
+
+    synchronized void defineAll(Environment globals) {
+        for (Map.Entry<String, LoxCallable> function : functions.entrySet())
+            globals.define(function.getKey(), function.getValue());
+    }
+
+    synchronized List<String> names() {
+        return new ArrayList<>(functions.keySet());
+    }
+
+
+    // Binding
+
+    private static LoxCallable bind(MethodHandle handle) {
+        MethodType type = handle.type();
+        if (type.parameterCount() == 0 || type.parameterType(0) != Interpreter.class)
+            handle = MethodHandles.dropArguments(handle, 0, Interpreter.class);
+
+        int arity = handle.type().parameterCount() - 1;
+        for (int i = 1; i <= arity; ++i)
+            handle = convertArgument(handle, i);
+        return new BoundNative(arity, convertResult(handle));
+    }
+
+    private static MethodHandle convertArgument(MethodHandle handle, int index) {
+        Class<?> type = handle.type().parameterType(index);
+        if (type == Object.class)  return handle;
+
+        MethodHandle converter;
+        if (type == double.class || type == Double.class)
+            converter = TO_DOUBLE;
+        else if (type == int.class || type == Integer.class)
+            converter = TO_INT;
+        else if (type == long.class || type == Long.class)
+            converter = TO_LONG;
+        else if (type == boolean.class || type == Boolean.class)
+            converter = TO_BOOLEAN;
+        else if (type == String.class)
+            converter = TO_STRING;
+        else if (!type.isPrimitive())
+            converter = MethodHandles.insertArguments(TO_INSTANCE, 0, type);
+        else
+            throw new IllegalArgumentException("Unsupported native parameter type " + type + ".");
+
+        converter = MethodHandles.insertArguments(converter, 0, index)
+                .asType(MethodType.methodType(type, Object.class));
+        return MethodHandles.filterArguments(handle, index, converter);
+    }
+
+    private static MethodHandle convertResult(MethodHandle handle) {
+        Class<?> type = handle.type().returnType();
+        if (type.isPrimitive() && type != void.class && type != boolean.class) {
+            if (type == char.class)
+                throw new IllegalArgumentException("Unsupported native return type char.");
+            handle = handle.asType(handle.type().changeReturnType(double.class));
+        } else if (Number.class.isAssignableFrom(type) && type != Double.class) {
+            handle = MethodHandles.filterReturnValue(handle,
+                    FROM_NUMBER.asType(MethodType.methodType(Object.class, type)));
+        }
+        // `void` becomes `null`, and primitives are boxed
+        return handle.asType(handle.type().changeReturnType(Object.class));
+    }
+
+    static class BoundNative implements LoxCallable {
+        private final int arity;
+        private final MethodHandle handle;  // (Interpreter, Object...)Object
+        private final MethodHandle spreader;  // (Interpreter, Object[])Object
+
+        BoundNative(int arity, MethodHandle handle) {
+            this.arity = arity;
+            this.handle = handle;
+            this.spreader = handle.asSpreader(Object[].class, arity);
+        }
+
+        @Override
+        public int arity() { return arity; }
+
+        @Override
+        public Object call(Interpreter interpreter, List<Object> arguments) {
+            switch (arity) {
+                case 0:  return call0(interpreter);
+                case 1:  return call1(interpreter, arguments.get(0));
+                case 2:  return call2(interpreter, arguments.get(0), arguments.get(1));
+                case 3:
+                    return call3(interpreter, arguments.get(0), arguments.get(1), arguments.get(2));
+            }
+            try {
+                return (Object)spreader.invokeExact(interpreter, arguments.toArray());
+            } catch (Throwable error) {
+                throw failure(error);
+            }
+        }
+
+        // For as many arguments as the arity, which the caller has checked
+
+        Object call0(Interpreter interpreter) {
+            try {
+                return (Object)handle.invokeExact(interpreter);
+            } catch (Throwable error) {
+                throw failure(error);
+            }
+        }
+
+        Object call1(Interpreter interpreter, Object a) {
+            try {
+                return (Object)handle.invokeExact(interpreter, a);
+            } catch (Throwable error) {
+                throw failure(error);
+            }
+        }
+
+        Object call2(Interpreter interpreter, Object a, Object b) {
+            try {
+                return (Object)handle.invokeExact(interpreter, a, b);
+            } catch (Throwable error) {
+                throw failure(error);
+            }
+        }
+
+        Object call3(Interpreter interpreter, Object a, Object b, Object c) {
+            try {
+                return (Object)handle.invokeExact(interpreter, a, b, c);
+            } catch (Throwable error) {
+                throw failure(error);
+            }
+        }
+
+        // What to throw for `error`: failures of host methods are runtime errors of the script
+        private static RuntimeException failure(Throwable error) {
+            if (error instanceof RuntimeError || error instanceof NativeError)
+                return (RuntimeException)error;
+            if (error instanceof Error)
+                throw (Error)error;
+            return new NativeError(error.getMessage() != null
+                    ? error.getMessage() : error.toString());
+        }
+
+        @Override
+        public String toString() { return "<native fn>"; }
+    }
+
+
+    // Converters
+
+    private static double toDouble(int index, Object value) {
+        if (!(value instanceof Double))
+            throw new NativeError("Argument " + index + " must be a number.");
+        return (double)value;
+    }
+
+    private static int toInt(int index, Object value) {
+        double number = toDouble(index, value);
+        if (number != (int)number)
+            throw new NativeError("Argument " + index + " must be an integer.");
+        return (int)number;
+    }
+
+    private static long toLong(int index, Object value) {
+        double number = toDouble(index, value);
+        if (number != (long)number)
+            throw new NativeError("Argument " + index + " must be an integer.");
+        return (long)number;
+    }
+
+    private static boolean toBoolean(int index, Object value) {
+        if (!(value instanceof Boolean))
+            throw new NativeError("Argument " + index + " must be a boolean.");
+        return (boolean)value;
+    }
+
+    private static String toText(int index, Object value) {
+        if (!(value instanceof String))
+            throw new NativeError("Argument " + index + " must be a string.");
+        return (String)value;
+    }
+
+    private static Object toInstance(Class<?> type, int index, Object value) {
+        if (value != null && !type.isInstance(value))
+            throw new NativeError("Argument " + index + " must be a " +
+                    type.getSimpleName() + ".");
+        return value;
+    }
+
+    private static Object fromNumber(Number number) {
+        return number == null ? null : number.doubleValue();
+    }
+}
@@ -0,0 +1,154 @@
+package com.craftinginterpreters.lox;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * `parallelMap(list, fn)`, `parallelReduce(list, init, fn)` and
+ * `parallelFor(start, end, fn)`. The range is split in half recursively down
+ * to a few chunks per worker of the fork-join pool (the common pool, or the
+ * caller's pool when called from one). Each chunk runs on its own interpreter,
+ * so the workers share only the globals and the function's closure, whose
+ * environments are safe to read and write concurrently (see `Environment`).
+ * Each call of the function takes a step from the budget, at the native's call.
+ * Chunks run on the caller's thread use the caller's interpreter, so that a
+ * scheduled script still gives up its turn at the end of its quantum.
+ */
+class ParallelNatives {
+    // Chunks per worker, so that uneven chunks still balance out
+    private static final int CHUNKS_PER_WORKER = 4;
+
+    @LoxNative
+    static LoxList parallelMap(Interpreter interpreter, Object list, Object fn) {
+        LoxList elements = list(list);
+        LoxCallable function = LoxNativeObject.function(fn, 1);
+        Environment.shareCaptured(function);
+        Token token = interpreter.callSite;
+        interpreter.allocate(elements.size() + 1L);
+        Object[] results = new Object[elements.size()];
+        new Chunk(interpreter, 0, elements.size(), (worker, from, to) -> {
+            for (int i = from; i < to; ++i) {
+                worker.step(token);
+                results[i] = function.call(worker, Arrays.asList(elements.get(i)));
+            }
+            return null;
+        }, null).invoke();
+        return new LoxList(results);
+    }
+
+    // As with Java streams, `init` must be an identity of `fn` (like 0 for addition)
+    @LoxNative
+    static Object parallelReduce(Interpreter interpreter, Object list, Object init, Object fn) {
+        LoxList elements = list(list);
+        LoxCallable function = LoxNativeObject.function(fn, 2);
+        Environment.shareCaptured(function);
+        Token token = interpreter.callSite;
+        return new Chunk(interpreter, 0, elements.size(), (worker, from, to) -> {
+            Object accumulator = init;
+            for (int i = from; i < to; ++i) {
+                worker.step(token);
+                accumulator = function.call(worker, Arrays.asList(accumulator, elements.get(i)));
+            }
+            return accumulator;
+        }, (worker, left, right) -> {
+            worker.step(token);
+            return function.call(worker, Arrays.asList(left, right));
+        }).invoke();
+    }
+
+    @LoxNative
+    static void parallelFor(Interpreter interpreter, Object from, Object to, Object fn) {
+        int start = integer(from);
+        int end = integer(to);
+        LoxCallable function = LoxNativeObject.function(fn, 1);
+        Environment.shareCaptured(function);
+        Token token = interpreter.callSite;
+        new Chunk(interpreter, start, Math.max(start, end), (worker, first, last) -> {
+            for (int i = first; i < last; ++i) {
+                worker.step(token);
+                function.call(worker, List.of((double)i));
+            }
+            return null;
+        }, null).invoke();
+    }
+
+    private interface Leaf {
+        Object run(Interpreter worker, int from, int to);
+    }
+
+    private interface Combiner {
+        Object combine(Interpreter worker, Object left, Object right);
+    }
+
+    // Tasks are serializable, but chunks never leave the pool
+    private static class Chunk extends RecursiveTask<Object> {
+        private static final long serialVersionUID = 1L;
+
+        private final transient Interpreter parent;
+        private final transient Thread caller;
+        private final int from, to, threshold;
+        private final transient Leaf leaf;
+        private final transient Combiner combiner;  // `null` if the chunks have no result
+
+        Chunk(Interpreter parent, int from, int to, Leaf leaf, Combiner combiner) {
+            this(parent, Thread.currentThread(), from, to, leaf, combiner, threshold(to - from));
+        }
+
+        private Chunk(Interpreter parent, Thread caller, int from, int to, Leaf leaf,
+                      Combiner combiner, int threshold) {
+            this.parent = parent;
+            this.caller = caller;
+            this.from = from;
+            this.to = to;
+            this.leaf = leaf;
+            this.combiner = combiner;
+            this.threshold = threshold;
+        }
+
+        private static int threshold(int size) {
+            int workers = ForkJoinTask.inForkJoinPool()
+                    ? ForkJoinTask.getPool().getParallelism()
+                    : ForkJoinPool.getCommonPoolParallelism();
+            return Math.max(1, size / (workers * CHUNKS_PER_WORKER));
+        }
+
+        @Override
+        protected Object compute() {
+            if (to - from <= threshold)
+                return leaf.run(worker(), from, to);
+
+            int middle = (from + to) >>> 1;
+            Chunk left = new Chunk(parent, caller, from, middle, leaf, combiner, threshold);
+            Chunk right = new Chunk(parent, caller, middle, to, leaf, combiner, threshold);
+            left.fork();
+            Object rightResult = right.compute();
+            Object leftResult = left.join();
+
+            if (combiner == null)  return null;
+            return combiner.combine(worker(), leftResult, rightResult);
+        }
+
+        private Interpreter worker() {
+            return Thread.currentThread() == caller ? parent : new Interpreter(parent);
+        }
+    }
+
+
+    // Argument checks
+
+    private static LoxList list(Object value) {
+        if (!(value instanceof LoxList))
+            throw new NativeError("Expect a list.");
+        return (LoxList)value;
+    }
+
+    private static int integer(Object value) {
+        if (!(value instanceof Double) || (double)value != Math.floor((double)value))
+            throw new NativeError("Expect an integer.");
+        return (int)(double)value;
+    }
+}
@@ -10,10 +10,18 @@ class Parser {
     private static class ParseError extends RuntimeException {}
 
     private final List<Token> tokens;
+    private final ErrorReporter reporter;
     private int current = 0;
 
-    Parser(List<Token> tokens) {
+    Parser(List<Token> tokens, ErrorReporter reporter) {
+        this(tokens, 0, reporter);
+    }
+
+    // Starts at the token `start`, as when resuming input that arrives in pieces
+    Parser(List<Token> tokens, int start, ErrorReporter reporter) {
         this.tokens = tokens;
+        this.reporter = reporter;
+        this.current = start;
     }
 
     List<Stmt> parse() {
@@ -25,6 +33,16 @@ class Parser {
         return statements;
     }
 
+    // Parses one declaration, or returns null at the end of the input or on an error
+    Stmt next() {
+        return isAtEnd() ? null : declaration();
+    }
+
+    // The token after the last one parsed
+    int position() {
+        return current;
+    }
+
 
     // Statements
 
@@ -153,18 +171,23 @@ class Parser {
     }
 
     private Stmt whileStatement() {
+        Token keyword = previous();
         consume(LEFT_PAREN, "Expect '(' after 'while'.");
         Expr condition = expression();
         consume(RIGHT_PAREN, "Expect ')' after while condition.");
 
         Stmt body = statement();
 
-        return new Stmt.While(condition, body);
+        return new Stmt.While(keyword, condition, body);
     }
 
     private Stmt forStatement() {
+        Token keyword = previous();
         consume(LEFT_PAREN, "Expect '(' after 'for'.");
 
+        if (checkAhead(check(VAR) ? 2 : 1, IN))
+            return forInStatement(keyword);
+
         Stmt initializer;
         if (match(SEMICOLON))
             initializer = null;
@@ -193,7 +216,7 @@ class Parser {
 
         if (condition == null)
             condition = new Expr.Literal(true);
-        body = new Stmt.While(condition, body);
+        body = new Stmt.While(keyword, condition, body);
 
         if (initializer != null)
             body = new Stmt.Block(Arrays.asList(initializer, body));
@@ -201,6 +224,18 @@ class Parser {
         return body;
     }
 
+    // `for (x in sequence)`, the variable being local to the loop with or without `var`
+    private Stmt forInStatement(Token keyword) {
+        match(VAR);
+        Token name = consume(IDENTIFIER, "Expect variable name.");
+        consume(IN, "Expect 'in' after loop variable.");
+        Expr iterable = expression();
+        consume(RIGHT_PAREN, "Expect ')' after loop sequence.");
+
+        Stmt body = statement();
+        return new Stmt.ForIn(keyword, name, iterable, body);
+    }
+
     private Stmt returnStatement() {
         Token keyword = previous();
         Expr value = null;
@@ -222,6 +257,7 @@ class Parser {
     }
 
     private Expr lambda() {
+        Token keyword = previous();
         consume(LEFT_PAREN, "Expect '(' for lambda function.");
 
         List<Token> params = new ArrayList<>();
@@ -237,7 +273,7 @@ class Parser {
         consume(LEFT_BRACE, "Expect '{' before body of lambda function.");
         List<Stmt> body = block();
 
-        return new Expr.Lambda(params, body);
+        return new Expr.Lambda(keyword, params, body);
     }
 
     private Expr assignment() {
@@ -415,6 +451,12 @@ class Parser {
         return peek().type == type;
     }
 
+    // Like `check`, `distance` tokens further
+    private boolean checkAhead(int distance, TokenType type) {
+        int index = current + distance;
+        return index < tokens.size() && tokens.get(index).type == type;
+    }
+
     private Token advance() {
         if (!isAtEnd())  current++;
         return previous();
@@ -438,7 +480,7 @@ class Parser {
     }
 
     private ParseError error(Token token, String message) {
-        Lox.error(token, message);
+        reporter.error(token, message);
         return new ParseError();
     }
 
@@ -0,0 +1,24 @@
+package com.craftinginterpreters.lox;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A compiled script: the output of the scanner, the parser and the resolver.
+ *
+ * The resolver stores its results in the syntax tree itself, the slots of the
+ * globals included (see `GlobalEnvironment`), and nothing writes to the tree
+ * after that. Everything that changes while running (environments, values,
+ * errors) belongs to the interpreter, which is why any number of contexts may
+ * run the same program at the same time.
+ * Compile it once with `LoxEngine.compile` and run it with `LoxContext.run`.
+ */
+public class Program {
+    final List<Stmt> statements;
+
+    Program(List<Stmt> statements) {
+        // The final field publishes the resolved tree safely to other threads
+        this.statements = Collections.unmodifiableList(new ArrayList<>(statements));
+    }
+}
@@ -0,0 +1,136 @@
+package com.craftinginterpreters.lox;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * An on-disk cache of resolved programs (`.loxc`) and of the globals left behind
+ * by preludes (`.loxs`). Each entry is named after the SHA-256 of the interpreter
+ * version and the source text, so an edited script or a new interpreter simply
+ * misses the cache instead of loading a stale tree.
+ *
+ * A missing or broken entry is a miss, and gets rewritten by the next store.
+ * Stores throw when they fail, since the callers should warn about an entry
+ * that will never be written, like the snapshot of a prelude that keeps a
+ * channel in a global, rather than keep compiling or running it in silence.
+ */
+class ProgramCache {
+    // Bump whenever the AST, the token types or the binary format change
+    static final int VERSION = 6;
+    private static final int MAGIC = 0x4C4F5843;  // "LOXC"
+
+    private final Path directory;
+    private final GlobalEnvironment.Slots slots;  // Of the engine, for the programs loaded
+
+    ProgramCache(Path directory) {
+        this(directory, GlobalEnvironment.Slots.STANDALONE);
+    }
+
+    ProgramCache(Path directory, GlobalEnvironment.Slots slots) {
+        this.directory = directory;
+        this.slots = slots;
+    }
+
+    // Returns the cached program of `source`, or `null` if there is no usable entry
+    Program load(String source) {
+        DataInputStream in = open(entry(source, ".loxc"));
+        if (in == null)  return null;
+
+        try (in) {
+            return new Program(new AstReader(in, slots).readStatements());
+        } catch (IOException | RuntimeException error) {
+            return null;  // A broken entry is just a miss, it gets rewritten on the next store
+        }
+    }
+
+    void store(String source, Program program) throws IOException {
+        store(entry(source, ".loxc"),
+                out -> new AstWriter(out).writeStatements(program.statements));
+    }
+
+    /**
+     * Restores the globals that running the prelude `source` left behind into
+     * `interpreter`, returning `false` if there is no usable snapshot.
+     */
+    boolean loadSnapshot(String source, Interpreter interpreter) {
+        DataInputStream in = open(entry(source, ".loxs"));
+        if (in == null)  return false;
+
+        try (in) {
+            HeapSnapshot.read(in, interpreter);
+            return true;
+        } catch (IOException | RuntimeException error) {
+            return false;
+        }
+    }
+
+    void storeSnapshot(String source, Interpreter interpreter) throws IOException {
+        store(entry(source, ".loxs"), out -> HeapSnapshot.write(out, interpreter));
+    }
+
+    private interface EntryWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private DataInputStream open(Path path) {
+        if (!Files.isRegularFile(path))  return null;
+
+        try {
+            InputStream file = Files.newInputStream(path);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(file));
+            if (in.readInt() == MAGIC && in.readInt() == VERSION)
+                return in;
+            in.close();
+        } catch (IOException error) {
+            // Unreadable entries are misses as well
+        }
+        return null;
+    }
+
+    private void store(Path path, EntryWriter writer) throws IOException {
+        Files.createDirectories(directory);
+
+        // Write to a temporary file first so that a concurrent run never sees half an entry
+        Path temporary = Files.createTempFile(directory, "lox", ".tmp");
+        try {
+            try (OutputStream file = Files.newOutputStream(temporary)) {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file));
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                writer.write(out);
+                out.flush();
+            }
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private Path entry(String source, String extension) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(Integer.toString(VERSION).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte)0);
+            digest.update(source.getBytes(StandardCharsets.UTF_8));
+
+            StringBuilder name = new StringBuilder();
+            for (byte b : digest.digest())
+                name.append(String.format("%02x", b));
+            return directory.resolve(name.append(extension).toString());
+        } catch (NoSuchAlgorithmException error) {
+            throw new IllegalStateException(error);  // Every JVM has to support SHA-256
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.craftinginterpreters.lox;
+
+import java.util.Map;
+
+/**
+ * The scope of a `for-in` loop over a range, which only holds the loop
+ * variable. The interpreter counts in a `double` field instead of defining a
+ * new boxed number for every element: the number is boxed when the body first
+ * reads it, so the loop itself allocates nothing. Once the body assigns the
+ * variable, or a closure that captured it is shared with other threads, it
+ * moves to the bindings of `Environment` for good.
+ */
+class RangeEnvironment extends Environment {
+    private final String name;
+    private double counter;
+    private Object boxed;  // `counter`, once read
+    private boolean spilled = false;  // Whether the variable lives in the bindings
+
+    RangeEnvironment(Environment enclosing, String name) {
+        super(enclosing);
+        this.name = name;
+    }
+
+    // Called by `Interpreter.visitForInStmt` for every element
+    void count(double value) {
+        if (spilled) {
+            super.define(name, value);
+            return;
+        }
+        counter = value;
+        boxed = null;
+    }
+
+    private Object read() {
+        if (boxed == null)
+            boxed = counter;
+        return boxed;
+    }
+
+    private void spill() {
+        if (spilled)  return;
+        super.define(name, read());
+        spilled = true;
+    }
+
+
+    @Override
+    void share() {
+        spill();
+        super.share();
+    }
+
+    @Override
+    void define(String name, Object value) {
+        if (name.equals(this.name))  spill();
+        super.define(name, value);
+    }
+
+    @Override
+    Object get(Token name) {
+        if (!spilled && name.lexeme.equals(this.name))
+            return read();
+        return super.get(name);
+    }
+
+    @Override
+    Object lookup(String name) {
+        if (!spilled && name.equals(this.name))
+            return read();
+        return super.lookup(name);
+    }
+
+    @Override
+    void assign(Token name, Object value) {
+        if (name.lexeme.equals(this.name))  spill();
+        super.assign(name, value);
+    }
+
+    @Override
+    Map<String, Object> bindings() {
+        spill();
+        return super.bindings();
+    }
+}
@@ -0,0 +1,153 @@
+package com.craftinginterpreters.lox;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Regular expressions, in the syntax of `java.util.regex`:
+ * - `match(pattern, text)` returns the list of the groups of `pattern` (the
+ *   whole match first) if it matches all of `text`, `nil` otherwise.
+ * - `find(pattern, text)` does the same for the first match in `text`.
+ * - `replace(pattern, text, replacement)` replaces every match, `$1` in
+ *   `replacement` standing for the first group.
+ * - `split(pattern, text)` returns the parts of `text` between the matches.
+ * - `regexStats()` returns the hits, misses, evictions and size of the cache
+ *   of compiled patterns.
+ *
+ * Patterns are compiled once and kept in an `LruCache` of `CAPACITY` entries
+ * by their source, so a pattern written in a loop isn't compiled at each
+ * iteration. Each thread also keeps a matcher for each of a few patterns, which
+ * is reset for each text instead of being created again.
+ *
+ * Under a budget or a scheduler, the matcher reads the text through
+ * `SteppedText`, which takes a step every `STRIDE` characters, so that a
+ * pattern that backtracks over a long text still stops at the deadline.
+ */
+class RegexNatives {
+    static final int CAPACITY = 256;
+    private static final int MATCHERS = 16;  // Per thread, a power of two
+    private static final int STRIDE = 1 << 12;
+
+    private static final LruCache<String, Pattern> patterns = new LruCache<>(CAPACITY);
+
+    // Indexed by the hash of their pattern, so a matcher replaces the one of another pattern
+    private static final ThreadLocal<Matcher[]> matchers =
+            ThreadLocal.withInitial(() -> new Matcher[MATCHERS]);
+
+    private static Matcher matcher(Interpreter interpreter, String source, String text) {
+        Pattern pattern = patterns.get(source);
+        if (pattern == null) {
+            try {
+                pattern = Pattern.compile(source);
+            } catch (PatternSyntaxException error) {
+                throw new NativeError("Invalid pattern: " + error.getDescription() + ".");
+            }
+            patterns.put(source, pattern);
+        }
+
+        CharSequence input = interpreter.isMetered() ? new SteppedText(interpreter, text) : text;
+        Matcher[] cached = matchers.get();
+        int slot = System.identityHashCode(pattern) & (MATCHERS - 1);
+        Matcher matcher = cached[slot];
+        if (matcher == null || matcher.pattern() != pattern)
+            return cached[slot] = pattern.matcher(input);
+        return matcher.reset(input);
+    }
+
+    @LoxNative
+    static LoxList match(Interpreter interpreter, String pattern, String text) {
+        Matcher matcher = matcher(interpreter, pattern, text);
+        return matcher.matches() ? groups(interpreter, matcher) : null;
+    }
+
+    @LoxNative
+    static LoxList find(Interpreter interpreter, String pattern, String text) {
+        Matcher matcher = matcher(interpreter, pattern, text);
+        return matcher.find() ? groups(interpreter, matcher) : null;
+    }
+
+    @LoxNative
+    static String replace(Interpreter interpreter, String pattern, String text, String replacement) {
+        Matcher matcher = matcher(interpreter, pattern, text);
+        interpreter.allocate();
+        try {
+            return matcher.replaceAll(replacement);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException error) {
+            throw new NativeError("Invalid replacement: " + error.getMessage());
+        }
+    }
+
+    // Like `String.split`, but keeps the empty parts at the end
+    @LoxNative
+    static LoxList split(Interpreter interpreter, String pattern, String text) {
+        Matcher matcher = matcher(interpreter, pattern, text);
+        interpreter.allocate();
+        LoxList parts = new LoxList();
+        int start = 0;
+        while (matcher.find()) {
+            if (matcher.end() == 0)  continue;  // No empty first part for an empty match
+            interpreter.allocate(2);  // The part and its place in the list
+            parts.add(text.substring(start, matcher.start()));
+            start = matcher.end();
+        }
+        interpreter.allocate(2);
+        parts.add(text.substring(start));
+        return parts;
+    }
+
+    @LoxNative
+    static LoxMap regexStats() {
+        LoxMap stats = new LoxMap();
+        stats.put("hits", (double)patterns.hits());
+        stats.put("misses", (double)patterns.misses());
+        stats.put("evictions", (double)patterns.evictions());
+        stats.put("size", (double)patterns.size());
+        return stats;
+    }
+
+    // The whole match and its groups, `nil` for those that didn't take part in it
+    private static LoxList groups(Interpreter interpreter, Matcher matcher) {
+        Object[] groups = new Object[matcher.groupCount() + 1];
+        interpreter.allocate(2L * groups.length + 1);  // The groups, their places and the list
+        for (int i = 0; i < groups.length; ++i)
+            groups[i] = matcher.group(i);
+        return new LoxList(groups);
+    }
+
+    // The text of a match, taking a step every `STRIDE` characters read
+    private static class SteppedText implements CharSequence {
+        private final Interpreter interpreter;
+        private final String text;
+        private int untilStep = STRIDE;
+
+        SteppedText(Interpreter interpreter, String text) {
+            this.interpreter = interpreter;
+            this.text = text;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (--untilStep < 0) {
+                untilStep = STRIDE;
+                interpreter.step();
+            }
+            return text.charAt(index);
+        }
+
+        @Override
+        public int length() {
+            return text.length();
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return text.substring(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return text;
+        }
+    }
+}
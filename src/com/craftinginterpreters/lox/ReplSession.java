@@ -0,0 +1,104 @@
+package com.craftinginterpreters.lox;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A REPL session that compiles its input incrementally.
+ *
+ * Every line is scanned exactly once and its tokens are appended to the pending
+ * input, so a declaration spread over several lines is never re-scanned from
+ * the start. After each line the parser resumes after the last complete
+ * declaration, so only the declaration still being typed is parsed again. If
+ * that fails at its very end, as with `fun f() {`, `if (x > 1)` or `print 1 +`,
+ * the rest is awaited on the next lines, and a blank line gives up on it.
+ *
+ * One resolver lives for the whole session. The resolution data is stored in the
+ * syntax tree itself, so once nothing refers to a line's tree any more (a
+ * function defined there still does), it is released along with the tree.
+ */
+class ReplSession {
+    private final ErrorReporter reporter;
+    private final Interpreter interpreter;
+    private final Resolver resolver;
+    private final ErrorReporter quiet = new ErrorReporter(new PrintStream(OutputStream.nullOutputStream()));
+    private final List<Token> pending = new ArrayList<>();  // Ends with an EOF token unless empty
+    private final List<Stmt> parsed = new ArrayList<>();    // The complete declarations in `pending`
+    private int parsedUpTo = 0;  // The token after them
+    private int line = 1;
+
+    ReplSession(LoxEngine engine, PrintStream out, PrintStream err) {
+        LoxContext context = engine.newContext(out, err);
+        this.reporter = context.reporter;
+        this.interpreter = context.interpreter;
+        this.resolver = new Resolver(reporter, engine.globalSlots);
+    }
+
+    // The next line of `input`, read like the natives read it, so that they can share it
+    String readLine(LineReader input) {
+        return input.readLine(interpreter);
+    }
+
+    boolean isContinuing() {
+        return !pending.isEmpty();
+    }
+
+    /**
+     * Feeds one line of input, running it as soon as it completes a declaration.
+     * A blank line forces whatever is pending to be run.
+     */
+    void accept(String source) {
+        List<Token> tokens = new Scanner(source, line++, reporter).scanTokens();
+        if (!pending.isEmpty())
+            pending.remove(pending.size() - 1);  // The previous line's EOF
+        pending.addAll(tokens);
+
+        if (reporter.hadError || tokens.size() == 1) {
+            flush();
+            return;
+        }
+
+        // Errors are only reported once no more input is awaited
+        Parser parser = new Parser(pending, parsedUpTo, quiet);
+        Stmt statement;
+        while ((statement = parser.next()) != null && !quiet.hadError) {
+            parsed.add(statement);
+            parsedUpTo = parser.position();
+        }
+        boolean incomplete = quiet.hadError && quiet.errorAtEnd;
+        boolean failed = quiet.hadError;
+        quiet.reset();
+        if (incomplete)  return;
+        if (failed) {
+            flush();
+            return;
+        }
+        List<Stmt> statements = new ArrayList<>(parsed);
+        clear();
+        run(statements);
+    }
+
+    private void flush() {
+        List<Stmt> statements = new ArrayList<>(parsed);
+        if (!reporter.hadError)
+            statements.addAll(new Parser(pending, parsedUpTo, reporter).parse());
+        clear();
+        run(statements);
+    }
+
+    private void clear() {
+        pending.clear();
+        parsed.clear();
+        parsedUpTo = 0;
+    }
+
+    private void run(List<Stmt> statements) {
+        if (!reporter.hadError)
+            resolver.resolve(statements);
+        if (!reporter.hadError)
+            interpreter.interpret(statements);
+        reporter.reset();
+    }
+}
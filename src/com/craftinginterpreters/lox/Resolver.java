@@ -1,18 +1,34 @@
 package com.craftinginterpreters.lox;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.Stack;
 
 public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
-    private final Interpreter interpreter;
+    private final ErrorReporter reporter;
+    private final GlobalEnvironment.Slots slots;  // Numbering the globals, see `Program`
     private final Stack<Map<String, Boolean>> scopes = new Stack<>();
     private FunctionType currentFunction = FunctionType.NONE;
     private ClassType currentClass = ClassType.NONE;
 
-    Resolver(Interpreter interpreter) {
-        this.interpreter = interpreter;
+    // Purity analysis, see `inferPurity`
+    private final Stack<Map<String, Stmt.Function>> functions = new Stack<>();  // Along `scopes`
+    private final Map<String, Stmt.Function> globalFunctions = new HashMap<>();
+    private final Set<Stmt.Function> reassigned = new HashSet<>();
+    private final List<Purity> analyzed = new ArrayList<>();
+    private Purity purity;  // Of the function being resolved, `null` outside of one
+
+    Resolver(ErrorReporter reporter) {
+        this(reporter, GlobalEnvironment.Slots.STANDALONE);
+    }
+
+    Resolver(ErrorReporter reporter, GlobalEnvironment.Slots slots) {
+        this.reporter = reporter;
+        this.slots = slots;
     }
 
     private enum FunctionType {
@@ -31,6 +47,10 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     void resolve(List<Stmt> statements) {
         for (Stmt statement : statements)
             resolve(statement);
+
+        // At the top level, every function that the new ones may call has been seen
+        if (scopes.empty())
+            inferPurity();
     }
 
     private void resolve(Stmt stmt) {
@@ -54,6 +74,7 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
     @Override
     public Void visitClassStmt(Stmt.Class stmt) {
+        impure();
         ClassType enclosingClass = currentClass;
         currentClass = ClassType.CLASS;
 
@@ -63,7 +84,7 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         boolean hasSuperclass = (stmt.superclass != null);
 
         if (hasSuperclass && stmt.name.lexeme.equals(stmt.superclass.name.lexeme))
-            Lox.error(stmt.superclass.name, "A class cannot inherit from itself.");
+            reporter.error(stmt.superclass.name, "A class cannot inherit from itself.");
 
         if (hasSuperclass) {
             currentClass = ClassType.SUBCLASS;
@@ -90,7 +111,7 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
         for (Stmt.Function staticMethod : stmt.staticMethods) {
             if (staticMethod.name.lexeme.equals("init"))
-                Lox.error(staticMethod.name, "Init method of a class cannot be static.");
+                reporter.error(staticMethod.name, "Init method of a class cannot be static.");
             resolveFunction(staticMethod, FunctionType.METHOD);
         }
 
@@ -109,10 +130,29 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         return null;
     }
 
+    @Override
+    public Void visitForInStmt(Stmt.ForIn stmt) {
+        impure();  // The sequence may change, or run code of its own
+        resolve(stmt.iterable);
+
+        beginScope();
+        declare(stmt.name);
+        define(stmt.name);
+        resolve(stmt.body);
+        endScope();
+        return null;
+    }
+
     @Override
     public Void visitFunctionStmt(Stmt.Function stmt) {
         declare(stmt.name);
         define(stmt.name);
+        if (scopes.empty()) {
+            Stmt.Function previous = globalFunctions.put(stmt.name.lexeme, stmt);
+            if (previous != null)  reassigned.add(previous);
+        } else {
+            functions.peek().put(stmt.name.lexeme, stmt);
+        }
         resolveFunction(stmt, FunctionType.FUNCTION);
         return null;
     }
@@ -125,6 +165,12 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     private void resolveFunction(Stmt.Function function, FunctionType type) {
         FunctionType enclosingFunction = currentFunction;
         currentFunction = type;
+        Purity enclosingPurity = purity;
+        purity = null;  // Methods are called through properties, so never known to be pure
+        if (type == FunctionType.FUNCTION) {
+            purity = new Purity(function, scopes.size());
+            analyzed.add(purity);
+        }
 
         beginScope();
         for (Token param : function.params) {
@@ -135,6 +181,7 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         endScope();
 
         currentFunction = enclosingFunction;
+        purity = enclosingPurity;
     }
 
     @Override
@@ -149,6 +196,7 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
     @Override
     public Void visitPrintStmt(Stmt.Print stmt) {
+        impure();
         resolve(stmt.expression);
         return null;
     }
@@ -156,9 +204,9 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     @Override
     public Void visitReturnStmt(Stmt.Return stmt) {
         if (currentFunction == FunctionType.NONE)
-            Lox.error(stmt.keyword, "Can't return from top-level code.");
+            reporter.error(stmt.keyword, "Can't return from top-level code.");
         else if (currentFunction == FunctionType.INITIALIZER)
-            Lox.error(stmt.keyword, "Can't return a value from an initializer.");
+            reporter.error(stmt.keyword, "Can't return a value from an initializer.");
 
         if (stmt.value != null)
             resolve(stmt.value);
@@ -174,6 +222,8 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
      */
     @Override
     public Void visitVarStmt(Stmt.Var stmt) {
+        if (scopes.empty() && globalFunctions.containsKey(stmt.name.lexeme))
+            reassigned.add(globalFunctions.remove(stmt.name.lexeme));
         declare(stmt.name);
         if (stmt.initializer != null)
             resolve(stmt.initializer);
@@ -195,7 +245,13 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     @Override
     public Void visitAssignExpr(Expr.Assign expr) {
         resolve(expr.value);
-        resolveLocal(expr, expr.name);
+        expr.depth = resolveLocal(expr.name);
+        if (expr.depth < 0)
+            expr.slot = slots.slot(expr.name.lexeme);
+
+        if (!isLocal(expr.depth))  impure();
+        Stmt.Function function = function(expr.name, expr.depth);
+        if (function != null)  reassigned.add(function);
         return null;
     }
 
@@ -208,7 +264,18 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
     @Override
     public Void visitCallExpr(Expr.Call expr) {
-        resolve(expr.callee);
+        if (purity != null && expr.callee instanceof Expr.Variable) {
+            // Reading the function called is fine, whether calling it is depends on it
+            Purity caller = purity;
+            purity = null;
+            resolve(expr.callee);
+            purity = caller;
+            callee((Expr.Variable)expr.callee);
+        } else {
+            impure();
+            resolve(expr.callee);
+        }
+
         for (Expr argument : expr.arguments)
             resolve(argument);
         return null;
@@ -216,6 +283,7 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
     @Override
     public Void visitGetExpr(Expr.Get expr) {
+        impure();  // Objects are mutable
         resolve(expr.object);  // Properties are looked up DYNAMICALLY, so they don't get resolved
         return null;
     }
@@ -228,7 +296,11 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
     @Override
     public Void visitLambdaExpr(Expr.Lambda expr) {
+        impure();
+        Purity enclosingPurity = purity;
+        purity = null;
         resolveLambda(expr, FunctionType.FUNCTION);
+        purity = enclosingPurity;
         return null;
     }
 
@@ -266,6 +338,7 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
      */
     @Override
     public Void visitSetExpr(Expr.Set expr) {
+        impure();
         resolve(expr.value);  // Resolve `expr.value` first!
         resolve(expr.object);
         return null;
@@ -278,23 +351,25 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
      */
     @Override
     public Void visitSuperExpr(Expr.Super expr) {
+        impure();
         if (currentClass == ClassType.NONE)
-            Lox.error(expr.keyword, "Cannot use 'super' outside of a class.");
+            reporter.error(expr.keyword, "Cannot use 'super' outside of a class.");
         else if (currentClass != ClassType.SUBCLASS)
-            Lox.error(expr.keyword, "Cannot use 'super' in a class with no superclass.");
+            reporter.error(expr.keyword, "Cannot use 'super' in a class with no superclass.");
 
-        resolveLocal(expr, expr.keyword);
+        expr.depth = resolveLocal(expr.keyword);
         return null;
     }
 
     @Override
     public Void visitThisExpr(Expr.This expr) {
+        impure();
         if (currentClass == ClassType.NONE) {
-            Lox.error(expr.keyword, "Can't use 'this' outside of a class.");
+            reporter.error(expr.keyword, "Can't use 'this' outside of a class.");
             return null;
         }
 
-        resolveLocal(expr, expr.keyword);
+        expr.depth = resolveLocal(expr.keyword);
         return null;
     }
 
@@ -308,9 +383,12 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     public Void visitVariableExpr(Expr.Variable expr) {
         if (!scopes.empty() &&
             scopes.peek().get(expr.name.lexeme) == Boolean.FALSE)  // Haven't been initialized yet
-            Lox.error(expr.name, "Can't read local variable in its own initializer.");
+            reporter.error(expr.name, "Can't read local variable in its own initializer.");
 
-        resolveLocal(expr, expr.name);
+        expr.depth = resolveLocal(expr.name);
+        if (expr.depth < 0)
+            expr.slot = slots.slot(expr.name.lexeme);
+        if (!isLocal(expr.depth))  impure();  // Outer variables may change between calls
 
         return null;
     }
@@ -318,13 +396,13 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
     // Utils
 
-    private void resolveLocal(Expr expr, Token name) {
+    // The number of scopes between the use of `name` and its declaration, or -1 for a global
+    private int resolveLocal(Token name) {
         for (int i = scopes.size() - 1; i >= 0; --i) {
-            if (scopes.get(i).containsKey(name.lexeme)) {
-                interpreter.resolve(expr, scopes.size() - 1 - i);
-                return;
-            }
+            if (scopes.get(i).containsKey(name.lexeme))
+                return scopes.size() - 1 - i;
         }
+        return -1;
     }
 
     private void declare(Token name) {
@@ -334,7 +412,7 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
         // Re-declaration in the same scope is not allowed
         if (scope.containsKey(name.lexeme))
-            Lox.error(name, "Already variable with this name in this scope.");
+            reporter.error(name, "Already variable with this name in this scope.");
 
         scope.put(name.lexeme, false);  // Mark the variable as existing but not-ready-yet
     }
@@ -348,10 +426,95 @@ public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
     private void beginScope() {
         scopes.push(new HashMap<>());
+        functions.push(new HashMap<>());
     }
 
     private void endScope() {
         scopes.pop();
+        functions.pop();
+    }
+
+
+    // Purity
+
+    /**
+     * A function is pure if it reads and assigns only its own parameters and
+     * locals, doesn't print, doesn't touch objects, classes or lambdas, and calls
+     * only pure functions, by name. Calls to natives are not pure, and neither
+     * are calls to a function that is assigned to anywhere. Calls can be
+     * recursive, and can refer to global functions declared later, so purity is
+     * settled once all of them have been resolved: every function that is pure
+     * on its own is assumed to be, and any that calls a function that isn't is
+     * ruled out, until none changes.
+     */
+    private static class Purity {
+        final Stmt.Function function;
+        final int scope;  // The index in `scopes` of the function's parameters
+        boolean impure = false;
+        final List<Stmt.Function> callees = new ArrayList<>();
+        final List<String> globalCallees = new ArrayList<>();  // Resolved at the end
+
+        Purity(Stmt.Function function, int scope) {
+            this.function = function;
+            this.scope = scope;
+        }
+    }
+
+    private void impure() {
+        if (purity != null)  purity.impure = true;
+    }
+
+    // Whether a variable `depth` scopes up belongs to the function being resolved
+    private boolean isLocal(int depth) {
+        return purity == null || (depth >= 0 && scopes.size() - 1 - depth >= purity.scope);
+    }
+
+    // The function declared as `name` `depth` scopes up, `null` if it isn't one
+    private Stmt.Function function(Token name, int depth) {
+        if (depth < 0)  return globalFunctions.get(name.lexeme);
+        return functions.get(scopes.size() - 1 - depth).get(name.lexeme);
+    }
+
+    private void callee(Expr.Variable callee) {
+        if (callee.depth < 0) {
+            purity.globalCallees.add(callee.name.lexeme);
+            return;
+        }
+
+        Stmt.Function function = function(callee.name, callee.depth);
+        if (function == null)
+            purity.impure = true;
+        else
+            purity.callees.add(function);
+    }
+
+    private void inferPurity() {
+        for (Purity candidate : analyzed)
+            candidate.function.pure = !candidate.impure;
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Purity candidate : analyzed) {
+                if (candidate.function.pure && !callsPureOnly(candidate)) {
+                    candidate.function.pure = false;
+                    changed = true;
+                }
+            }
+        }
+        analyzed.clear();
+    }
+
+    private boolean callsPureOnly(Purity candidate) {
+        for (Stmt.Function callee : candidate.callees)
+            if (!callee.pure || reassigned.contains(callee))
+                return false;
+        for (String name : candidate.globalCallees) {
+            Stmt.Function callee = globalFunctions.get(name);
+            if (callee == null || !callee.pure || reassigned.contains(callee))
+                return false;
+        }
+        return true;
     }
 
 }
@@ -11,6 +11,7 @@ import static com.craftinginterpreters.lox.TokenType.*;
 
 class Scanner {
     private final String source;
+    private final ErrorReporter reporter;
     private final List<Token> tokens = new ArrayList<>();
     private int start = 0;
     private int current = 0;
@@ -26,6 +27,7 @@ class Scanner {
         keywords.put("for", FOR);
         keywords.put("fun", FUN);
         keywords.put("if", IF);
+        keywords.put("in", IN);
         keywords.put("nil", NIL);
         keywords.put("or", OR);
         keywords.put("print", PRINT);
@@ -38,8 +40,15 @@ class Scanner {
         keywords.put("while", WHILE);
     }
 
-    Scanner(String source) {
+    Scanner(String source, ErrorReporter reporter) {
         this.source = source;
+        this.reporter = reporter;
+    }
+
+    // Scan a fragment whose first line is `line` of a longer input (e.g. a REPL session)
+    Scanner(String source, int line, ErrorReporter reporter) {
+        this(source, reporter);
+        this.line = line;
     }
 
     List<Token> scanTokens() {
@@ -89,7 +98,7 @@ class Scanner {
                 else if (isAlpha(c))
                     scanIdentifier();
                 else
-                    Lox.error(line, "Unexpected character.");
+                    reporter.error(line, "Unexpected character.");
                 break;
         }
     }
@@ -124,7 +133,7 @@ class Scanner {
         }
 
         if (isAtEnd()) {
-            Lox.error(line, "Unterminated string");
+            reporter.error(line, "Unterminated string");
             return;
         }
 
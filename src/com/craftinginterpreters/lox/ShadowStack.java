@@ -0,0 +1,56 @@
+package com.craftinginterpreters.lox;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * The Lox calls an interpreter is in, outermost first, kept while a
+ * `LoxProfiler` samples it. Functions and lambdas push their declaration when
+ * called, so that calls of a method bound to different instances are one frame,
+ * and classes push themselves; each pops its frame when it returns or throws.
+ *
+ * Only the interpreter's thread changes the stack, and only the sampler reads
+ * it from another, without locking. The frame (and a grown array) is stored
+ * before `depth` is, with release semantics, and the sampler reads `depth` with
+ * acquire semantics before anything else, so every frame below the depth it
+ * sees is there, with no fence needed on x86. A sample taken while a frame is
+ * being pushed or popped may just miss or keep that frame.
+ */
+class ShadowStack {
+    private static final VarHandle DEPTH;
+
+    static {
+        try {
+            DEPTH = MethodHandles.lookup().findVarHandle(ShadowStack.class, "depth", int.class);
+        } catch (ReflectiveOperationException error) {
+            throw new ExceptionInInitializerError(error);
+        }
+    }
+
+    final LoxProfiler profiler;
+    private Object[] frames = new Object[64];
+    private int depth = 0;  // Written by the interpreter's thread alone
+
+    ShadowStack(LoxProfiler profiler) {
+        this.profiler = profiler;
+    }
+
+    void push(Object frame) {
+        if (depth == frames.length)
+            frames = Arrays.copyOf(frames, depth * 2);
+        frames[depth] = frame;
+        DEPTH.setRelease(this, depth + 1);
+    }
+
+    void pop() {
+        DEPTH.setRelease(this, depth - 1);
+    }
+
+    // Called by the sampler
+    Object[] snapshot() {
+        int depth = (int)DEPTH.getAcquire(this);
+        Object[] frames = this.frames;
+        return Arrays.copyOf(frames, Math.min(depth, frames.length));
+    }
+}
@@ -0,0 +1,57 @@
+package com.craftinginterpreters.lox;
+
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+
+/**
+ * Standard input as a stream of lines, for scripts run from a file at the end
+ * of a pipeline, e.g. `tail -f app.log | jlox filter.lox`, and for statements
+ * typed at the REPL, which read the lines typed after them. Hosts define them
+ * with `LoxEngine.defineStdinNatives`. `readLine()` returns
+ * the next line, or `nil` once the input has ended, and `stdin()` an iterator
+ * over the lines not read yet, for `for (line in stdin())`. Both read from the
+ * same `LineReader`, so they can be mixed, and block until a line comes.
+ */
+class StdinNatives {
+    private static LineReader reader;
+
+    // Standard input itself, not `System.in` and its buffer, is read
+    static synchronized LineReader reader() {
+        if (reader == null)
+            reader = new LineReader(new FileInputStream(FileDescriptor.in));
+        return reader;
+    }
+
+    @LoxNative
+    static String readLine(Interpreter interpreter) {
+        String line = reader().readLine(interpreter);
+        if (line != null)
+            interpreter.allocate();
+        return line;
+    }
+
+    @LoxNative
+    static LoxIterator stdin(Interpreter interpreter) {
+        LineReader lines = reader();
+        return new LoxIterator() {
+            private String line;  // Read ahead by `hasNext`
+
+            @Override
+            public boolean hasNext() {
+                if (line == null)
+                    line = lines.readLine(interpreter);
+                return line != null;
+            }
+
+            @Override
+            public Object next() {
+                if (!hasNext())
+                    throw new NativeError("No more lines in the input.");
+                String current = line;
+                line = null;
+                interpreter.allocate();
+                return current;
+            }
+        };
+    }
+}
@@ -12,6 +12,7 @@ abstract class Stmt {
         R visitBlockStmt(Block stmt);
         R visitClassStmt(Class stmt);
         R visitExpressionStmt(Expression stmt);
+        R visitForInStmt(ForIn stmt);
         R visitFunctionStmt(Function stmt);
         R visitIfStmt(If stmt);
         R visitPrintStmt(Print stmt);
@@ -65,6 +66,25 @@ abstract class Stmt {
         final Expr expression;
     }
 
+    static class ForIn extends Stmt {
+        ForIn(Token keyword, Token name, Expr iterable, Stmt body) {
+            this.keyword = keyword;
+            this.name = name;
+            this.iterable = iterable;
+            this.body = body;
+        }
+
+        @Override
+        <R> R accept(Visitor<R> visitor) {
+            return visitor.visitForInStmt(this);
+        }
+
+        final Token keyword;
+        final Token name;
+        final Expr iterable;
+        final Stmt body;
+    }
+
     static class Function extends Stmt {
         Function(Token name, List<Token> params, List<Stmt> body) {
             this.name = name;
@@ -80,6 +100,7 @@ abstract class Stmt {
         final Token name;
         final List<Token> params;
         final List<Stmt> body;
+        boolean pure = false;
     }
 
     static class If extends Stmt {
@@ -143,7 +164,8 @@ abstract class Stmt {
     }
 
     static class While extends Stmt {
-        While(Expr condition, Stmt body) {
+        While(Token keyword, Expr condition, Stmt body) {
+            this.keyword = keyword;
             this.condition = condition;
             this.body = body;
         }
@@ -153,6 +175,7 @@ abstract class Stmt {
             return visitor.visitWhileStmt(this);
         }
 
+        final Token keyword;
         final Expr condition;
         final Stmt body;
     }
@@ -15,7 +15,7 @@ enum TokenType {
     IDENTIFIER, STRING, NUMBER,
 
     // Keywords
-    AND, CLASS, ELSE, FALSE, FUN, FOR, IF, NIL, OR,
+    AND, CLASS, ELSE, FALSE, FUN, FOR, IF, IN, NIL, OR,
     PRINT, RETURN, STATIC, SUPER, THIS, TRUE, VAR, WHILE,
 
     EOF
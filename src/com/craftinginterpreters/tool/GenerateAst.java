@@ -15,19 +15,19 @@ public class GenerateAst {
 
         // Expr.java
         defineAst(outputDir, "Expr", Arrays.asList(
-                "Assign : Token name, Expr value",
+                "Assign : Token name, Expr value ; int depth = -1, GlobalEnvironment.Slot slot",
                 "Binary : Expr left, Token operator, Expr right",
                 "Call : Expr callee, Token paren, List<Expr> arguments",
                 "Get : Expr object, Token name",
                 "Grouping : Expr expression",
-                "Lambda : List<Token> params, List<Stmt> body",
+                "Lambda : Token keyword, List<Token> params, List<Stmt> body",
                 "Literal : Object value",
                 "Logical : Expr left, Token operator, Expr right",
                 "Set : Expr object, Token name, Expr value",
-                "Super : Token keyword, Token method",
-                "This : Token keyword",
+                "Super : Token keyword, Token method ; int depth = -1",
+                "This : Token keyword ; int depth = -1",
                 "Unary : Token operator, Expr right",
-                "Variable : Token name"
+                "Variable : Token name ; int depth = -1, GlobalEnvironment.Slot slot"
         ));
 
         // Stmt.java
@@ -36,12 +36,13 @@ public class GenerateAst {
                 "Class : Token name, Expr.Variable superclass, " +
                         "List<Stmt.Function> nonstaticMethods, List<Stmt.Function> staticMethods",
                 "Expression : Expr expression",
-                "Function : Token name, List<Token> params, List<Stmt> body",
+                "ForIn : Token keyword, Token name, Expr iterable, Stmt body",
+                "Function : Token name, List<Token> params, List<Stmt> body ; boolean pure = false",
                 "If : Expr condition, Stmt thenBranch, Stmt elseBranch",
                 "Print : Expr expression",
                 "Return : Token keyword, Expr value",
                 "Var : Token name, Expr initializer",
-                "While : Expr condition, Stmt body"
+                "While : Token keyword, Expr condition, Stmt body"
         ));
     }
 
@@ -69,8 +70,9 @@ public class GenerateAst {
         // nested AST classes
         for (String type : types) {
             String className = type.split(":")[0].trim();
-            String fields = type.split(":")[1].trim();
-            defineType(writer, baseName, className, fields);
+            String[] fields = type.split(":")[1].split(";");
+            String resolved = fields.length > 1 ? fields[1].trim() : null;
+            defineType(writer, baseName, className, fields[0].trim(), resolved);
         }
 
         // The base accept() method.
@@ -82,8 +84,10 @@ public class GenerateAst {
         writer.close();
     }
 
+    // `resolvedFields` (after `;` in a type) are filled in when resolving, not by the parser
     private static void defineType(
-            PrintWriter writer, String baseName, String className, String fieldList)
+            PrintWriter writer, String baseName, String className, String fieldList,
+            String resolvedFields)
             throws IOException {
         writer.println("    static class " + className + " extends " + baseName + " {");
 
@@ -109,6 +113,9 @@ public class GenerateAst {
         // Fields
         for (String field : fields)
             writer.println("        final " + field + ";");
+        if (resolvedFields != null)
+            for (String field : resolvedFields.split(", "))
+                writer.println("        " + field + ";");
 
         writer.println("    }");
         writer.println();